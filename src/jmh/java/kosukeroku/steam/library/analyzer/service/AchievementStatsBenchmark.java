@@ -0,0 +1,41 @@
+package kosukeroku.steam.library.analyzer.service;
+
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import kosukeroku.steam.library.analyzer.modelDTO.AchievementStats;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// building achievement stats (including the recent unlocks sort) from per-game achievement data, and formatting them
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AchievementStatsBenchmark {
+
+    @Param({"50", "1000", "20000"})
+    private int games;
+
+    private SteamService steamService;
+    private List<SteamService.AchievementData> achievementData;
+    private AchievementStats stats;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        steamService = BenchmarkData.steamService(new GameNameDictionary());
+        achievementData = BenchmarkData.achievements(random, BenchmarkData.library(random, games));
+        stats = steamService.buildAchievementStats(achievementData);
+    }
+
+    @Benchmark
+    public AchievementStats buildAchievementStats() {
+        return steamService.buildAchievementStats(achievementData);
+    }
+
+    @Benchmark
+    public String formatAchievementMessage() {
+        return steamService.formatAchievementMessage(stats);
+    }
+}
@@ -0,0 +1,74 @@
+package kosukeroku.steam.library.analyzer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import kosukeroku.steam.library.analyzer.cache.ProfileVisibilityCache;
+import kosukeroku.steam.library.analyzer.modelDTO.SteamGame;
+
+import java.util.*;
+
+// synthetic libraries and achievements for the benchmarks. appIds are drawn from a shared pool, so libraries of
+// different users overlap, and playtimes are skewed like real ones: many games never played, a few played a lot
+final class BenchmarkData {
+
+    private static final int APP_ID_STEP = 10; // steam appIds are multiples of 10
+    private static final String[] NAME_WORDS = {"Counter", "Strike", "Dota", "Portal", "Half-Life", "The", "Witcher",
+            "Dark", "Souls", "Stardew", "Valley", "Terraria", "Hades", "Elden", "Ring", "Factorio", "Rim_World", "(Beta)"};
+
+    private BenchmarkData() {}
+
+    // the benchmarked paths only touch the visibility cache, everything else is served from a primed fetch context
+    static SteamService steamService(GameNameDictionary gameNames) {
+        return new SteamService(null, null, null, new ProfileVisibilityCache(15), null, null, gameNames, null, null, new SimpleMeterRegistry());
+    }
+
+    static List<SteamGame> library(Random random, int games) {
+        int poolSize = Math.max(games * 4, 30_000);
+        Set<Long> appIds = new HashSet<>();
+        while (appIds.size() < games) {
+            appIds.add((long) (random.nextInt(poolSize) + 1) * APP_ID_STEP);
+        }
+
+        List<SteamGame> library = new ArrayList<>(games);
+        for (Long appId : appIds) {
+            int playtime = random.nextDouble() < 0.4 ? 0 : (int) Math.pow(random.nextDouble() * 150, 2);
+            Integer recentPlaytime = random.nextDouble() < 0.05 ? random.nextInt(1200) + 1 : null;
+            library.add(new SteamGame(appId, gameName(appId), playtime, recentPlaytime, "icon" + appId));
+        }
+        return library;
+    }
+
+    static List<SteamService.AchievementData> achievements(Random random, List<SteamGame> library) {
+        long now = System.currentTimeMillis() / 1000;
+        List<SteamService.AchievementData> achievementData = new ArrayList<>();
+
+        for (SteamGame game : library) {
+            if (random.nextDouble() < 0.3) continue; // games without achievements
+
+            int total = random.nextInt(99) + 2;
+            int completed = game.playtime() == 0 ? 0 : random.nextInt(total + 1);
+
+            List<SteamService.RecentAchievement> recent = new ArrayList<>();
+            for (int i = 0; i < Math.min(completed, 3); i++) {
+                recent.add(new SteamService.RecentAchievement(game.appId(), "Achievement " + i, game.name(),
+                        now - random.nextInt(100_000_000)));
+            }
+            achievementData.add(new SteamService.AchievementData(game.appId(), game.name(), total, completed, completed == total, recent));
+        }
+        return achievementData;
+    }
+
+    static String steamId(int index) {
+        return String.valueOf(76561197960265728L + index);
+    }
+
+    private static String gameName(long appId) {
+        int words = (int) (appId % 3) + 1;
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) name.append(' ');
+            name.append(NAME_WORDS[(int) ((appId / APP_ID_STEP + i * 7) % NAME_WORDS.length)]);
+        }
+        return name.append(' ').append(appId).toString();
+    }
+}
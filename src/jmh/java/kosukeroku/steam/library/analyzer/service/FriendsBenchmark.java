@@ -0,0 +1,98 @@
+package kosukeroku.steam.library.analyzer.service;
+
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import kosukeroku.steam.library.analyzer.client.SteamEndpoint;
+import kosukeroku.steam.library.analyzer.modelDTO.*;
+import kosukeroku.steam.library.analyzer.util.CompactLibrary;
+import kosukeroku.steam.library.analyzer.util.GameOverlapEngine;
+import kosukeroku.steam.library.analyzer.util.GamePopularityAggregator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// friend popularity aggregation, per-friend overlaps and the friends view message; friends' libraries are primed
+// into the fetch context, so no steam or redis calls are made
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FriendsBenchmark {
+
+    @Param({"50", "500"})
+    private int friends;
+
+    @Param({"50", "1000"})
+    private int games; // size of the user's and every friend's library
+
+    private SteamService steamService;
+    private SteamFetchContext context;
+    private List<String> friendIds;
+    private Map<String, String> friendNames;
+    private List<CompactLibrary> friendLibraries;
+    private CompactLibrary myLibrary;
+
+    private List<FriendGameStats> popularGames;
+    private List<FriendGameOverlap> overlaps;
+    private List<FriendAchievementLeaderboard> leaderboard;
+    private AchievementStats myAchievementStats;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        GameNameDictionary gameNames = new GameNameDictionary();
+        steamService = BenchmarkData.steamService(gameNames);
+        context = new SteamFetchContext();
+
+        List<SteamGame> myGames = BenchmarkData.library(random, games);
+        myLibrary = CompactLibrary.of(myGames, gameNames);
+
+        friendIds = new ArrayList<>();
+        friendNames = new HashMap<>();
+        friendLibraries = new ArrayList<>();
+        for (int i = 1; i <= friends; i++) {
+            String friendId = BenchmarkData.steamId(i);
+            CompactLibrary library = CompactLibrary.of(BenchmarkData.library(random, games), gameNames);
+            friendIds.add(friendId);
+            friendNames.put(friendId, "Friend_" + i);
+            friendLibraries.add(library);
+            context.prime(SteamEndpoint.GET_OWNED_GAMES, friendId, null, library);
+        }
+
+        popularGames = popularGames();
+        overlaps = new ArrayList<>();
+        GameOverlapEngine overlapEngine = new GameOverlapEngine(myLibrary);
+        for (String friendId : friendIds.subList(0, 3)) {
+            overlaps.add(steamService.calculateOverlapWithFriend(friendId, friendNames, overlapEngine, context).block());
+        }
+        myAchievementStats = steamService.buildAchievementStats(BenchmarkData.achievements(random, myGames));
+
+        leaderboard = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            leaderboard.add(new FriendAchievementLeaderboard("Friend_" + i, friendIds.get(i), 5000 - i * 700, false,
+                    System.currentTimeMillis() - i * 600_000L, false));
+        }
+    }
+
+    @Benchmark
+    public List<FriendGameStats> popularGames() {
+        GamePopularityAggregator aggregator = new GamePopularityAggregator();
+        for (CompactLibrary library : friendLibraries) {
+            aggregator.addLibrary(library);
+        }
+        return steamService.sortPopularGames(aggregator);
+    }
+
+    @Benchmark
+    public void overlapWithFriends(Blackhole blackhole) {
+        GameOverlapEngine overlapEngine = new GameOverlapEngine(myLibrary);
+        for (String friendId : friendIds) {
+            blackhole.consume(steamService.calculateOverlapWithFriend(friendId, friendNames, overlapEngine, context).block());
+        }
+    }
+
+    @Benchmark
+    public String formatFriendGamesMessage() {
+        return steamService.formatFriendGamesMessage(popularGames, overlaps, leaderboard, myAchievementStats, "Gabe_Newell");
+    }
+}
@@ -0,0 +1,70 @@
+package kosukeroku.steam.library.analyzer.service;
+
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import kosukeroku.steam.library.analyzer.modelDTO.GameStats;
+import kosukeroku.steam.library.analyzer.modelDTO.SteamGame;
+import kosukeroku.steam.library.analyzer.util.CompactLibrary;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// overall stats, top games and markdown escaping of one user's library
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LibraryStatsBenchmark {
+
+    @Param({"50", "1000", "20000"})
+    private int games;
+
+    private SteamService steamService;
+    private List<SteamGame> gameList;
+    private CompactLibrary library;
+    private GameStats stats;
+    private List<SteamGame> topGames;
+
+    @Setup
+    public void setUp() {
+        GameNameDictionary gameNames = new GameNameDictionary();
+        steamService = BenchmarkData.steamService(gameNames);
+        gameList = BenchmarkData.library(new Random(42), games);
+        library = CompactLibrary.of(gameList, gameNames);
+        stats = steamService.getOverallStats(library);
+        topGames = steamService.getTopGamesByPlaytime(library);
+    }
+
+    @Benchmark
+    public CompactLibrary compactLibrary() {
+        return CompactLibrary.of(gameList, new GameNameDictionary());
+    }
+
+    @Benchmark
+    public GameStats overallStats() {
+        return steamService.getOverallStats(library);
+    }
+
+    @Benchmark
+    public List<SteamGame> topGamesByPlaytime() {
+        return steamService.getTopGamesByPlaytime(library);
+    }
+
+    @Benchmark
+    public void escapeMarkdown(Blackhole blackhole) {
+        for (SteamGame game : gameList) {
+            blackhole.consume(steamService.escapeMarkdown(game.name()));
+        }
+    }
+
+    @Benchmark
+    public String formatStatsMessage() {
+        return steamService.formatStatsMessage(stats, BenchmarkData.steamId(0), "Gabe_Newell");
+    }
+
+    @Benchmark
+    public String formatTopGamesMessage() {
+        return steamService.formatTopGamesMessage(topGames, "all_time");
+    }
+}
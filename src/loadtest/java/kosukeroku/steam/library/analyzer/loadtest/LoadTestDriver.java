@@ -0,0 +1,123 @@
+package kosukeroku.steam.library.analyzer.loadtest;
+
+import kosukeroku.steam.library.analyzer.SteamLibraryAnalyzerApplication;
+import kosukeroku.steam.library.analyzer.service.BotService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// simulates concurrent chats against the real services: every chat sends a steamID and then presses all menu
+// buttons, the way users do. steam is the local stub (started here unless stub-url is given), redis is the one
+// the app is configured with, so flush it between runs to measure cold caches. telegram is not involved at all.
+// run with ./gradlew loadTest -Pargs="chats=200 profiles=50 rounds=3"; other key=value args go to the stub
+@Slf4j
+public class LoadTestDriver {
+
+    private static final List<String> BUTTONS = List.of("top_games", "recent_games", "achievements", "friends");
+    private static final String INITIAL_MESSAGE = "initial_message";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = SteamStubServer.parseArgs(args);
+        int chats = Integer.parseInt(options.getOrDefault("chats", "100"));
+        int profiles = Integer.parseInt(options.getOrDefault("profiles", String.valueOf(chats))); // fewer profiles than chats means shared profiles
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "1"));
+
+        SteamStubServer stub = new SteamStubServer(SteamStubServer.Config.fromArgs(options));
+        String stubUrl = options.get("stub-url");
+        if (stubUrl == null) {
+            stub.start();
+            stubUrl = stub.baseUrl();
+        }
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SteamLibraryAnalyzerApplication.class)
+                .properties(
+                        "steam.api.base-url=" + stubUrl,
+                        "steam.api.key=stub",
+                        "telegram.bot.mode=none",
+                        "telegram.bot.token=stub",
+                        "telegram.bot.username=stub",
+                        "server.port=0",
+                        "app.leaderboard.warm-initial-delay-ms=" + Long.MAX_VALUE / 2)
+                .run();
+
+        try {
+            BotService botService = context.getBean(BotService.class);
+            Map<String, Queue<Long>> latencies = new ConcurrentHashMap<>();
+            Map<String, Integer> errors = new ConcurrentHashMap<>();
+
+            log.info("Running {} chats over {} profiles, {} rounds", chats, profiles, rounds);
+            long startNanos = System.nanoTime();
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int chat = 0; chat < chats; chat++) {
+                    long chatId = chat + 1;
+                    String steamId = stub.steamId(chat % profiles);
+                    executor.submit(() -> runChat(botService, chatId, steamId, rounds, latencies, errors));
+                }
+            }
+
+            report(latencies, errors, System.nanoTime() - startNanos);
+        } finally {
+            context.close();
+            stub.stop();
+        }
+    }
+
+    private static void runChat(BotService botService, long chatId, String steamId, int rounds,
+                                Map<String, Queue<Long>> latencies, Map<String, Integer> errors) {
+        for (int round = 0; round < rounds; round++) {
+            timed(INITIAL_MESSAGE, latencies, errors, () -> botService.handleInitialMessage(steamId, chatId));
+            for (String button : BUTTONS) {
+                timed(button, latencies, errors, () -> botService.handleButtonResponse(button, chatId, partial -> {}));
+            }
+        }
+    }
+
+    private static void timed(String operation, Map<String, Queue<Long>> latencies, Map<String, Integer> errors,
+                              Callable<String> call) {
+        long startNanos = System.nanoTime();
+        String reply;
+        try {
+            reply = call.call();
+        } catch (Exception e) {
+            reply = "❌ " + e.getMessage();
+        }
+        latencies.computeIfAbsent(operation, key -> new ConcurrentLinkedQueue<>()).add(System.nanoTime() - startNanos);
+
+        // bot services answer failures with a message instead of throwing
+        if (reply == null || reply.startsWith("❌")) {
+            errors.merge(operation, 1, Integer::sum);
+        }
+    }
+
+    private static void report(Map<String, Queue<Long>> latencies, Map<String, Integer> errors, long elapsedNanos) {
+        int operations = latencies.values().stream().mapToInt(Queue::size).sum();
+        double elapsedSeconds = elapsedNanos / 1e9;
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%n%d operations in %.1f s, %.1f ops/s%n", operations, elapsedSeconds, operations / elapsedSeconds));
+        report.append(String.format("%-16s %8s %8s %10s %10s %10s %10s%n", "operation", "count", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+
+        List<String> order = new ArrayList<>(List.of(INITIAL_MESSAGE));
+        order.addAll(BUTTONS);
+        for (String operation : order) {
+            Queue<Long> samples = latencies.get(operation);
+            if (samples == null) continue;
+
+            long[] sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+            report.append(String.format("%-16s %8d %8d %10.1f %10.1f %10.1f %10.1f%n",
+                    operation, sorted.length, errors.getOrDefault(operation, 0),
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6));
+        }
+
+        System.out.println(report);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
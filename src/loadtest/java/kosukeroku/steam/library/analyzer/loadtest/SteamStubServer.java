@@ -0,0 +1,334 @@
+package kosukeroku.steam.library.analyzer.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+// local stand-in for the five steam web api endpoints the bot uses, so load tests don't spend a real api key.
+// every profile is generated from (seed, steamId), so the same id always has the same library, friends,
+// achievements and privacy settings across runs; only latency and random errors differ between calls.
+// run standalone with ./gradlew steamStub -Pargs="port=8089 max-games=5000", or embedded by the load test driver
+@Slf4j
+public class SteamStubServer {
+
+    private static final long STEAM_ID_BASE = 76561198000000000L;
+    private static final int APP_ID_POOL = 30_000; // games are drawn from this many appIds, so libraries overlap
+    private static final int APP_ID_STEP = 10;
+
+    public record Config(
+            int port,
+            long seed,
+            int population,              // profiles friends are drawn from, smaller means denser friend graphs
+            int maxGames,
+            int maxFriends,
+            int minLatencyMillis,
+            int maxLatencyMillis,
+            double errorRate,            // share of calls answered 500
+            double throttleRate,         // share of calls answered 429
+            double privateLibraryRate,   // share of profiles with an empty GetOwnedGames response
+            double privateFriendsRate,   // share of profiles answering 401 on GetFriendList
+            double privateAchievementsRate // share of profiles answering 403 on GetPlayerAchievements
+    ) {
+        public static Config fromArgs(Map<String, String> args) {
+            return new Config(
+                    Integer.parseInt(args.getOrDefault("port", "8089")),
+                    Long.parseLong(args.getOrDefault("seed", "42")),
+                    Integer.parseInt(args.getOrDefault("population", "10000")),
+                    Integer.parseInt(args.getOrDefault("max-games", "2000")),
+                    Integer.parseInt(args.getOrDefault("max-friends", "300")),
+                    Integer.parseInt(args.getOrDefault("min-latency-ms", "30")),
+                    Integer.parseInt(args.getOrDefault("max-latency-ms", "150")),
+                    Double.parseDouble(args.getOrDefault("error-rate", "0.01")),
+                    Double.parseDouble(args.getOrDefault("throttle-rate", "0.0")),
+                    Double.parseDouble(args.getOrDefault("private-library-rate", "0.1")),
+                    Double.parseDouble(args.getOrDefault("private-friends-rate", "0.1")),
+                    Double.parseDouble(args.getOrDefault("private-achievements-rate", "0.15")));
+        }
+    }
+
+    private final Config config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer server;
+
+    public SteamStubServer(Config config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws IOException {
+        SteamStubServer stub = new SteamStubServer(Config.fromArgs(parseArgs(args)));
+        stub.start();
+    }
+
+    // arguments are key=value pairs
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> parsed = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                parsed.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+        return parsed;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(config.port()), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor()); // simulated latency is a sleep, so threads are cheap
+        server.createContext("/ISteamUser/ResolveVanityURL/v0001/", exchange -> handle(exchange, this::resolveVanityUrl));
+        server.createContext("/IPlayerService/GetOwnedGames/v0001/", exchange -> handle(exchange, this::getOwnedGames));
+        server.createContext("/ISteamUserStats/GetPlayerAchievements/v1/", exchange -> handle(exchange, this::getPlayerAchievements));
+        server.createContext("/ISteamUser/GetFriendList/v1/", exchange -> handle(exchange, this::getFriendList));
+        server.createContext("/ISteamUser/GetPlayerSummaries/v2/", exchange -> handle(exchange, this::getPlayerSummaries));
+        server.createContext("/ISteamUserStats/GetSchemaForGame/v2/", exchange -> handle(exchange, this::getSchemaForGame));
+        server.start();
+        log.info("Steam stub listening on port {} with {}", config.port(), config);
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + config.port();
+    }
+
+    // a steamID of the generated population, for drivers that need profiles to analyze
+    public String steamId(int index) {
+        return String.valueOf(STEAM_ID_BASE + Math.floorMod(index, config.population()));
+    }
+
+    private record Reply(int status, Object body) {}
+
+    @FunctionalInterface
+    private interface Handler {
+        Reply handle(Map<String, String> params);
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Thread.sleep(random.nextInt(config.minLatencyMillis(), config.maxLatencyMillis() + 1));
+
+            Reply reply;
+            double failure = random.nextDouble();
+            if (failure < config.errorRate()) {
+                reply = new Reply(500, Map.of());
+            } else if (failure < config.errorRate() + config.throttleRate()) {
+                reply = new Reply(429, Map.of());
+            } else {
+                reply = handler.handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+            }
+
+            byte[] body = objectMapper.writeValueAsBytes(reply.body());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(reply.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Stub failed to answer {}: {}", exchange.getRequestURI(), e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Reply resolveVanityUrl(Map<String, String> params) {
+        String vanityUrl = params.getOrDefault("vanityurl", "");
+        if (vanityUrl.startsWith("missing")) {
+            return new Reply(200, Map.of("response", Map.of("success", 42, "message", "No match")));
+        }
+        return new Reply(200, Map.of("response", Map.of("steamid", steamId(vanityUrl.hashCode()), "success", 1)));
+    }
+
+    private Reply getOwnedGames(Map<String, String> params) {
+        Profile profile = profile(params.get("steamid"));
+        if (profile.privateLibrary()) {
+            return new Reply(200, Map.of("response", Map.of()));
+        }
+
+        boolean includeAppInfo = "1".equals(params.get("include_appinfo"));
+        List<Map<String, Object>> games = new ArrayList<>();
+        for (OwnedGame game : profile.games()) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("appid", game.appId());
+            if (includeAppInfo) {
+                json.put("name", gameName(game.appId()));
+                json.put("img_icon_url", Long.toHexString(game.appId() * 2654435761L));
+            }
+            json.put("playtime_forever", game.playtime());
+            if (game.recentPlaytime() > 0) {
+                json.put("playtime_2weeks", game.recentPlaytime());
+            }
+            games.add(json);
+        }
+        return new Reply(200, Map.of("response", Map.of("game_count", games.size(), "games", games)));
+    }
+
+    private Reply getPlayerAchievements(Map<String, String> params) {
+        String steamId = params.get("steamid");
+        long appId = Long.parseLong(params.getOrDefault("appid", "0"));
+        Profile profile = profile(steamId);
+
+        if (profile.privateAchievements()) {
+            return new Reply(403, Map.of("playerstats", Map.of("error", "Profile is not public", "success", false)));
+        }
+
+        int total = achievementCount(appId);
+        if (total == 0) {
+            return new Reply(400, Map.of("playerstats", Map.of("error", "Requested app has no stats", "success", false)));
+        }
+
+        // the share of unlocked achievements grows with the playtime of the game
+        OwnedGame owned = profile.games().stream().filter(game -> game.appId() == appId).findFirst().orElse(null);
+        double progress = owned == null ? 0 : Math.min(1.0, owned.playtime() / 3000.0);
+        Random random = new Random(mix(config.seed() ^ Long.parseLong(steamId)) ^ appId);
+        long now = System.currentTimeMillis() / 1000;
+
+        // like steam, names and descriptions are only sent when a language is asked for
+        boolean localized = params.containsKey("l");
+
+        List<Map<String, Object>> achievements = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            boolean achieved = random.nextDouble() < progress;
+            Map<String, Object> achievement = new LinkedHashMap<>();
+            achievement.put("apiname", "ACH_" + i);
+            achievement.put("achieved", achieved ? 1 : 0);
+            achievement.put("unlocktime", achieved ? now - random.nextInt(200_000_000) : 0);
+            if (localized) {
+                achievement.put("name", "Achievement " + i);
+                achievement.put("description", "Do the thing number " + i);
+            }
+            achievements.add(achievement);
+        }
+        return new Reply(200, Map.of("playerstats", Map.of(
+                "steamID", steamId, "gameName", gameName(appId), "achievements", achievements, "success", true)));
+    }
+
+    private Reply getFriendList(Map<String, String> params) {
+        Profile profile = profile(params.get("steamid"));
+        if (profile.privateFriends()) {
+            return new Reply(401, Map.of());
+        }
+
+        List<Map<String, Object>> friends = profile.friendIds().stream()
+                .map(friendId -> Map.<String, Object>of("steamid", friendId, "relationship", "friend", "friend_since", 1_500_000_000L))
+                .toList();
+        return new Reply(200, Map.of("friendslist", Map.of("friends", friends)));
+    }
+
+    private Reply getPlayerSummaries(Map<String, String> params) {
+        List<Map<String, Object>> players = Arrays.stream(params.getOrDefault("steamids", "").split(","))
+                .filter(id -> !id.isBlank())
+                .map(id -> Map.<String, Object>of(
+                        "steamid", id,
+                        "personaname", "Player_" + id.substring(Math.max(0, id.length() - 6)),
+                        "profileurl", "https://steamcommunity.com/profiles/" + id + "/",
+                        "personastate", 0))
+                .toList();
+        return new Reply(200, Map.of("response", Map.of("players", players)));
+    }
+
+    private Reply getSchemaForGame(Map<String, String> params) {
+        long appId = Long.parseLong(params.getOrDefault("appid", "0"));
+
+        Map<String, Object> game = new LinkedHashMap<>();
+        game.put("gameName", gameName(appId));
+        game.put("gameVersion", "1");
+
+        int total = achievementCount(appId);
+        if (total > 0) {
+            List<Map<String, Object>> achievements = new ArrayList<>();
+            for (int i = 0; i < total; i++) {
+                achievements.add(Map.of(
+                        "name", "ACH_" + i,
+                        "defaultvalue", 0,
+                        "displayName", "Achievement " + i,
+                        "hidden", 0,
+                        "description", "Do the thing number " + i));
+            }
+            game.put("availableGameStats", Map.of("achievements", achievements));
+        }
+        return new Reply(200, Map.of("game", game));
+    }
+
+    // deterministic synthetic profile
+    private record OwnedGame(long appId, int playtime, int recentPlaytime) {}
+
+    private record Profile(List<OwnedGame> games, List<String> friendIds,
+                           boolean privateLibrary, boolean privateFriends, boolean privateAchievements) {}
+
+    private Profile profile(String steamId) {
+        Random random = new Random(mix(config.seed() ^ Long.parseLong(steamId)));
+
+        boolean privateLibrary = random.nextDouble() < config.privateLibraryRate();
+        boolean privateFriends = random.nextDouble() < config.privateFriendsRate();
+        boolean privateAchievements = random.nextDouble() < config.privateAchievementsRate();
+
+        // most libraries are small and a few are huge, friend lists likewise
+        int gameCount = 1 + (int) (config.maxGames() * Math.pow(random.nextDouble(), 3));
+        Set<Long> appIds = new LinkedHashSet<>();
+        while (appIds.size() < Math.min(gameCount, APP_ID_POOL)) {
+            appIds.add((long) (1 + random.nextInt(APP_ID_POOL)) * APP_ID_STEP);
+        }
+        List<OwnedGame> games = new ArrayList<>();
+        for (long appId : appIds) {
+            int playtime = random.nextDouble() < 0.4 ? 0 : (int) Math.pow(random.nextDouble() * 120, 2);
+            int recentPlaytime = playtime > 0 && random.nextDouble() < 0.05 ? 1 + random.nextInt(Math.min(playtime, 1200)) : 0;
+            games.add(new OwnedGame(appId, playtime, recentPlaytime));
+        }
+
+        int friendCount = (int) (config.maxFriends() * Math.pow(random.nextDouble(), 2));
+        Set<String> friendIds = new LinkedHashSet<>();
+        while (friendIds.size() < Math.min(friendCount, config.population() - 1)) {
+            String friendId = steamId(random.nextInt(config.population()));
+            if (!friendId.equals(steamId)) friendIds.add(friendId);
+        }
+
+        return new Profile(games, new ArrayList<>(friendIds), privateLibrary, privateFriends, privateAchievements);
+    }
+
+    // 30% of games have no stats, the rest have up to 80 achievements
+    private int achievementCount(long appId) {
+        long hash = mix(appId);
+        return Math.floorMod(hash, 10) < 3 ? 0 : 2 + (int) Math.floorMod(hash >>> 8, 79);
+    }
+
+    private static String gameName(long appId) {
+        return "Stub Game " + appId;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) return params;
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    // murmur3 finalizer, turns related seeds into unrelated ones
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
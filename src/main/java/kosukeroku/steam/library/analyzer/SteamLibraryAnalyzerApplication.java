@@ -2,8 +2,10 @@ package kosukeroku.steam.library.analyzer;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SteamLibraryAnalyzerApplication {
 
     public static void main(String[] args) {
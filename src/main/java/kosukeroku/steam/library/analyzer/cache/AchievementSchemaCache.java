@@ -0,0 +1,72 @@
+package kosukeroku.steam.library.analyzer.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import kosukeroku.steam.library.analyzer.modelDTO.AchievementSchema;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// redis cache of game schemas (localized achievement names) per appId and language, shared by all users.
+// player achievements are requested without localization and names are joined from here, so every user's response
+// carries only apinames and unlock times. schemas change only with game updates and are kept for a long time
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AchievementSchemaCache {
+
+    private static final String KEY_PREFIX = "steam:achievement_schema:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.cache.schema.ttl-days:30}")
+    private Long ttlDays;
+
+    public Optional<AchievementSchema> get(String appId, String language) {
+        try {
+            String json = redisTemplate.opsForValue().get(key(appId, language));
+            return json == null ? Optional.empty() : Optional.of(objectMapper.readValue(json, AchievementSchema.class));
+        } catch (Exception e) {
+            log.warn("Could not read cached schema of appId {}: {}", appId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public void put(String appId, String language, AchievementSchema schema) {
+        try {
+            redisTemplate.opsForValue().set(key(appId, language), objectMapper.writeValueAsString(schema),
+                    Duration.ofDays(ttlDays));
+        } catch (Exception e) {
+            log.warn("Could not cache schema of appId {}: {}", appId, e.getMessage());
+        }
+    }
+
+    // returns the cached schema or loads and caches it; redis is accessed on the bounded elastic scheduler,
+    // since the template is blocking
+    public Mono<AchievementSchema> getOrLoad(String appId, String language, Mono<AchievementSchema> loader) {
+        return Mono.fromCallable(() -> get(appId, language))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(cached -> {
+                    meterRegistry.counter("cache.lookups", "cache", "achievement_schema",
+                            "result", cached.isPresent() ? "hit" : "miss").increment();
+                    if (cached.isPresent()) return Mono.just(cached.get());
+
+                    return loader
+                            .publishOn(Schedulers.boundedElastic())
+                            .doOnNext(schema -> put(appId, language, schema));
+                });
+    }
+
+    private static String key(String appId, String language) {
+        return KEY_PREFIX + language + ":" + appId;
+    }
+}
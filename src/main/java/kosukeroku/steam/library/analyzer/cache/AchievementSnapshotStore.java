@@ -0,0 +1,64 @@
+package kosukeroku.steam.library.analyzer.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kosukeroku.steam.library.analyzer.modelDTO.GameAchievementSnapshot;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// per-user snapshot of achievement progress by game, stored as a redis hash 'appId -> snapshot json'.
+// it lets a refresh request only the games whose playtime changed since the last analysis
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AchievementSnapshotStore {
+
+    private static final String KEY_PREFIX = "steam:achievement_snapshot:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.cache.achievement-snapshot.ttl-days:30}")
+    private Long ttlDays;
+
+    public Map<Long, GameAchievementSnapshot> load(String steamId) {
+        Map<Long, GameAchievementSnapshot> snapshots = new HashMap<>();
+
+        try {
+            Map<String, String> entries = redisTemplate.<String, String>opsForHash().entries(KEY_PREFIX + steamId);
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                snapshots.put(Long.valueOf(entry.getKey()), objectMapper.readValue(entry.getValue(), GameAchievementSnapshot.class));
+            }
+        } catch (Exception e) {
+            log.warn("Could not read achievement snapshot for {}: {}", steamId, e.getMessage());
+            return new HashMap<>(); // treating a broken snapshot as missing, every game is fetched again
+        }
+
+        return snapshots;
+    }
+
+    // merges refreshed games into the stored snapshot
+    public void save(String steamId, Collection<GameAchievementSnapshot> refreshed) {
+        if (refreshed.isEmpty()) return;
+
+        try {
+            Map<String, String> entries = new HashMap<>();
+            for (GameAchievementSnapshot snapshot : refreshed) {
+                entries.put(snapshot.appId().toString(), objectMapper.writeValueAsString(snapshot));
+            }
+
+            String key = KEY_PREFIX + steamId;
+            redisTemplate.<String, String>opsForHash().putAll(key, entries);
+            redisTemplate.expire(key, Duration.ofDays(ttlDays));
+        } catch (Exception e) {
+            log.warn("Could not save achievement snapshot for {}: {}", steamId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package kosukeroku.steam.library.analyzer.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kosukeroku.steam.library.analyzer.modelDTO.AchievementTotal;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+
+// precomputed completed-achievement totals used by the leaderboard, kept fresh by the leaderboard warmer
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AchievementTotalsStore {
+
+    private static final String KEY_PREFIX = "steam:achievement_total:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.leaderboard.total-ttl-days:7}")
+    private Long ttlDays;
+
+    // looks up totals of a whole friend list with a single MGET, returns only the totals that were found
+    public Map<String, AchievementTotal> getAll(Collection<String> steamIds) {
+        if (steamIds.isEmpty()) return Collections.emptyMap();
+
+        List<String> ids = new ArrayList<>(steamIds);
+
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(ids.stream().map(id -> KEY_PREFIX + id).toList());
+            if (values == null) return Collections.emptyMap();
+
+            Map<String, AchievementTotal> found = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                if (values.get(i) != null) {
+                    found.put(ids.get(i), objectMapper.readValue(values.get(i), AchievementTotal.class));
+                }
+            }
+            return found;
+
+        } catch (Exception e) {
+            log.warn("Could not read achievement totals: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    public void put(String steamId, AchievementTotal total) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + steamId, objectMapper.writeValueAsString(total), Duration.ofDays(ttlDays));
+        } catch (Exception e) {
+            log.warn("Could not save achievement total for {}: {}", steamId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package kosukeroku.steam.library.analyzer.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+// appId -> name catalog shared by all users and bot replicas, kept in a redis hash without a ttl, since names of steam
+// apps almost never change. it fills lazily: names learned from responses with appinfo are queued in the dictionary
+// and written here in batches, and names the dictionary misses (e.g. after a restart) are looked up here,
+// so friends' libraries can be fetched without appinfo and only the games that are shown get a name
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AppNameCatalog {
+
+    private static final String KEY = "steam:app_names";
+
+    private final StringRedisTemplate redisTemplate;
+    private final GameNameDictionary gameNames;
+
+    // fills the dictionary with the names found in one HMGET, returns the appIds that are still unnamed
+    public List<Integer> load(Collection<Integer> appIds) {
+        List<Integer> ids = new ArrayList<>(appIds);
+        if (ids.isEmpty()) return ids;
+
+        try {
+            List<Object> values = redisTemplate.opsForHash().multiGet(KEY, ids.stream().<Object>map(String::valueOf).toList());
+
+            List<Integer> missing = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                Object name = values.get(i);
+                if (name != null) {
+                    gameNames.putPersisted(ids.get(i), name.toString());
+                } else {
+                    missing.add(ids.get(i));
+                }
+            }
+            log.debug("App catalog: {} of {} names found", ids.size() - missing.size(), ids.size());
+            return missing;
+
+        } catch (Exception e) {
+            log.warn("Could not read app names: {}", e.getMessage());
+            return ids;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalog.flush-interval-ms:10000}")
+    @PreDestroy
+    public void flush() {
+        Map<Integer, String> learned = gameNames.drainLearned();
+        if (learned.isEmpty()) return;
+
+        Map<String, String> entries = new HashMap<>();
+        learned.forEach((appId, name) -> entries.put(String.valueOf(appId), name));
+
+        try {
+            redisTemplate.opsForHash().putAll(KEY, entries);
+            log.debug("App catalog: {} names persisted", entries.size());
+        } catch (Exception e) {
+            log.warn("Could not persist {} app names: {}", entries.size(), e.getMessage());
+            gameNames.requeueLearned(learned); // retried with the next flush
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package kosukeroku.steam.library.analyzer.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// names of steam apps by appId, shared by all compact libraries: every name is kept once per process
+// instead of once per library owning the game, and duplicates parsed from responses are left to the gc.
+// it also numbers every appId it sees with a dense index (0, 1, 2...), so sets of games can be bitmaps
+// over a small contiguous range instead of over sparse appIds going into the millions.
+// it is the in-heap level of AppNameCatalog: names learned from responses are queued for the catalog to persist
+@Component
+public class GameNameDictionary {
+
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> denseIndices = new ConcurrentHashMap<>();
+    private final AtomicInteger nextDenseIndex = new AtomicInteger();
+    private final Map<Integer, String> learned = new ConcurrentHashMap<>(); // not persisted in the catalog yet
+
+    public void put(int appId, String name) {
+        if (name == null) return;
+
+        // reading first, so known names (the usual case) don't cause writes
+        if (!name.equals(names.get(appId))) {
+            names.put(appId, name);
+            learned.put(appId, name);
+        }
+    }
+
+    // for names read from the catalog itself, they are not queued to be persisted again
+    public void putPersisted(int appId, String name) {
+        if (name != null) names.putIfAbsent(appId, name);
+    }
+
+    // null if the name is unknown
+    public String get(int appId) {
+        return names.get(appId);
+    }
+
+    // stable for the lifetime of the process, assigned on first sight of the appId
+    public int denseIndex(int appId) {
+        Integer index = denseIndices.get(appId);
+        if (index != null) return index;
+        return denseIndices.computeIfAbsent(appId, id -> nextDenseIndex.getAndIncrement());
+    }
+
+    // takes the names learned since the last call
+    public Map<Integer, String> drainLearned() {
+        Map<Integer, String> drained = new HashMap<>();
+        for (Integer appId : learned.keySet()) {
+            String name = learned.remove(appId);
+            if (name != null) drained.put(appId, name);
+        }
+        return drained;
+    }
+
+    public void requeueLearned(Map<Integer, String> names) {
+        names.forEach(learned::putIfAbsent);
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,244 @@
+package kosukeroku.steam.library.analyzer.cache;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import kosukeroku.steam.library.analyzer.client.JsonStreamDecoder;
+import kosukeroku.steam.library.analyzer.client.OwnedGamesReader;
+import kosukeroku.steam.library.analyzer.client.SteamApiClient;
+import kosukeroku.steam.library.analyzer.client.SteamEndpoint;
+import kosukeroku.steam.library.analyzer.util.CompactLibrary;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.*;
+
+// redis cache for GetOwnedGames responses, shared by all chats (and bot replicas), so libraries of common friends
+// are downloaded once per ttl instead of once per analysis. libraries are stored in the shape of a GetOwnedGames
+// response (without the fields we don't use), so they are read back by the same streaming reader as responses.
+// libraries fetched with and without appinfo are kept under separate keys: a nameless copy fetched as someone's
+// friend must not be served as that user's own library, while a library with names serves both
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OwnedGamesCache {
+
+    private static final String KEY_PREFIX = "steam:owned_games:";
+    private static final String NAMELESS_KEY_PREFIX = "steam:owned_games:nameless:";
+    private static final String LOCK_PREFIX = "steam:owned_games:lock:";
+    private static final long LOCK_POLL_INTERVAL_MS = 100;
+
+    // deletes the lock only if it still holds our token, so a loader whose lock has expired
+    // can't release the lock of the loader that took it over
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final GameNameDictionary gameNames;
+    private final SteamApiClient steamApiClient;
+
+    @Value("${app.cache.owned-games.ttl-minutes:60}")
+    private Long ttlMinutes;
+
+    // the lock is held for as long as a GetOwnedGames call may take with all its retries, plus this margin
+    // for the wait in the endpoint's limiter queue; waiters give up and load the library themselves after that
+    @Value("${app.cache.owned-games.lock-margin-seconds:10}")
+    private Long lockMarginSeconds;
+
+    // utility record for a cached library, withNames is false for libraries fetched without appinfo
+    public record CachedLibrary(CompactLibrary library, boolean withNames) {}
+
+    // a library without names is only looked up if names are not needed
+    public Optional<CompactLibrary> get(String steamId, boolean withNames) {
+        try {
+            if (withNames) {
+                return Optional.ofNullable(deserialize(redisTemplate.opsForValue().get(KEY_PREFIX + steamId)));
+            }
+            return Optional.ofNullable(read(List.of(steamId)).get(steamId)).map(CachedLibrary::library);
+        } catch (Exception e) {
+            log.warn("Could not read cached library for {}: {}", steamId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // looks up a whole friend list with a single MGET of both kinds of keys, returns only the libraries that were found;
+    // a library with names is preferred over a nameless one
+    public Map<String, CachedLibrary> getAll(Collection<String> steamIds) {
+        if (steamIds.isEmpty()) return Collections.emptyMap();
+
+        try {
+            Map<String, CachedLibrary> found = read(new ArrayList<>(steamIds));
+            log.info("Library cache: {} of {} libraries found", found.size(), steamIds.size());
+            countLookups(found.size(), steamIds.size() - found.size());
+            return found;
+
+        } catch (Exception e) {
+            log.warn("Could not read cached libraries: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    private Map<String, CachedLibrary> read(List<String> ids) throws IOException {
+        List<String> keys = new ArrayList<>(ids.size() * 2);
+        ids.forEach(id -> keys.add(KEY_PREFIX + id));
+        ids.forEach(id -> keys.add(NAMELESS_KEY_PREFIX + id));
+
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        if (values == null) return Collections.emptyMap();
+
+        Map<String, CachedLibrary> found = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            CompactLibrary library = deserialize(values.get(i));
+            if (library != null) {
+                found.put(ids.get(i), new CachedLibrary(library, true));
+                continue;
+            }
+
+            CompactLibrary namelessLibrary = deserialize(values.get(ids.size() + i));
+            if (namelessLibrary != null) {
+                found.put(ids.get(i), new CachedLibrary(namelessLibrary, false));
+            }
+        }
+        return found;
+    }
+
+    // private profiles fail to load and never get here, so they are not cached
+    public void put(String steamId, CompactLibrary library, boolean withNames) {
+        if (library == null) return;
+
+        try {
+            redisTemplate.opsForValue().set((withNames ? KEY_PREFIX : NAMELESS_KEY_PREFIX) + steamId, serialize(library),
+                    Duration.ofMinutes(ttlMinutes));
+        } catch (Exception e) {
+            log.warn("Could not cache library for {}: {}", steamId, e.getMessage());
+        }
+    }
+
+    // returns the cached library or loads it; only the caller holding the redis lock subscribes to the loader,
+    // the others wait for it to fill the key, so a popular profile does not cause a burst of identical requests.
+    // redis is accessed on the bounded elastic scheduler, since the template is blocking
+    public Mono<CompactLibrary> getOrLoad(String steamId, boolean withNames, Mono<CompactLibrary> loader) {
+        String lockKey = LOCK_PREFIX + (withNames ? "" : "nameless:") + steamId;
+        String lockToken = UUID.randomUUID().toString();
+
+        return Mono.fromCallable(() -> get(steamId, withNames))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(cached -> {
+                    countLookups(cached.isPresent() ? 1 : 0, cached.isPresent() ? 0 : 1);
+                    if (cached.isPresent()) return Mono.just(cached.get());
+
+                    return Mono.fromCallable(() -> tryLock(lockKey, lockToken))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .flatMap(locked -> locked
+                                    ? loadHoldingLock(steamId, withNames, lockKey, lockToken, loader)
+                                    : awaitOtherLoader(steamId, withNames, lockKey, loader));
+                });
+    }
+
+    private Mono<CompactLibrary> loadHoldingLock(String steamId, boolean withNames, String lockKey, String lockToken,
+                                                 Mono<CompactLibrary> loader) {
+        return loader
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(library -> put(steamId, library, withNames))
+                .doFinally(signal -> Schedulers.boundedElastic().schedule(() -> unlock(lockKey, lockToken)));
+    }
+
+    // polls the key until the lock holder fills it; loads the library directly if the holder finished
+    // without caching anything (e.g. private profile or error) or did not finish in time
+    private Mono<CompactLibrary> awaitOtherLoader(String steamId, boolean withNames, String lockKey, Mono<CompactLibrary> loader) {
+        return Mono.fromCallable(() -> {
+                    Optional<CompactLibrary> cached = get(steamId, withNames);
+                    if (cached.isPresent() || !isLocked(lockKey)) return cached;
+                    return null; // still being loaded by another caller, polling again
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .repeatWhenEmpty(repeats -> repeats.delayElements(Duration.ofMillis(LOCK_POLL_INTERVAL_MS)))
+                .timeout(lockDuration(), Mono.just(Optional.<CompactLibrary>empty()))
+                .flatMap(cached -> {
+                    if (cached.isPresent()) return Mono.just(cached.get());
+
+                    log.debug("Library for {} was not filled by another loader, loading it directly", steamId);
+                    return loader;
+                });
+    }
+
+    private Duration lockDuration() {
+        return steamApiClient.maxCallDuration(SteamEndpoint.GET_OWNED_GAMES).plusSeconds(lockMarginSeconds);
+    }
+
+    private boolean tryLock(String lockKey, String lockToken) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, lockToken, lockDuration()));
+        } catch (Exception e) {
+            log.warn("Could not acquire library lock {}: {}", lockKey, e.getMessage());
+            return true; // redis is unavailable, so nobody else can fill the key either
+        }
+    }
+
+    private boolean isLocked(String lockKey) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(lockKey));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void unlock(String lockKey, String lockToken) {
+        try {
+            redisTemplate.execute(UNLOCK_SCRIPT, List.of(lockKey), lockToken);
+        } catch (Exception e) {
+            log.debug("Could not release library lock {}: {}", lockKey, e.getMessage());
+        }
+    }
+
+    private void countLookups(int hits, int misses) {
+        meterRegistry.counter("cache.lookups", "cache", "owned_games", "result", "hit").increment(hits);
+        meterRegistry.counter("cache.lookups", "cache", "owned_games", "result", "miss").increment(misses);
+    }
+
+    private String serialize(CompactLibrary library) throws IOException {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("response");
+            generator.writeNumberField("game_count", library.size());
+            generator.writeArrayFieldStart("games");
+
+            for (int i = 0; i < library.size(); i++) {
+                generator.writeStartObject();
+                generator.writeNumberField("appid", library.appId(i));
+                String name = library.name(i);
+                if (name != null) generator.writeStringField("name", name);
+                generator.writeNumberField("playtime_forever", library.playtime(i));
+                if (library.recentPlaytime(i) > 0) generator.writeNumberField("playtime_2weeks", library.recentPlaytime(i));
+                generator.writeEndObject();
+            }
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        return json.toString();
+    }
+
+    private CompactLibrary deserialize(String json) throws IOException {
+        if (json == null) return null;
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            return JsonStreamDecoder.read(parser, new OwnedGamesReader(gameNames));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package kosukeroku.steam.library.analyzer.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+// two-tier cache of persona names: a bounded in-heap L1 in front of redis (L2), which is shared by all bot replicas.
+// when a replica refreshes names it publishes their ids, and the other replicas drop them from their L1
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PlayerNameCache {
+
+    private static final String KEY_PREFIX = "steam:player_name:";
+    private static final String INVALIDATION_CHANNEL = "steam:player_name:invalidate";
+    private static final String MESSAGE_SEPARATOR = "|";
+
+    // utility record for L1 entries
+    private record CachedName(String name, long expiresAt) {}
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    // used to ignore our own invalidation messages
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Value("${app.cache.player-names.l1-max-size:10000}")
+    private Integer l1MaxSize;
+
+    @Value("${app.cache.player-names.l1-ttl-minutes:30}")
+    private Long l1TtlMinutes;
+
+    @Value("${app.cache.player-names.ttl-hours:24}")
+    private Long ttlHours;
+
+    private Map<String, CachedName> l1;
+
+    @PostConstruct
+    void init() {
+        // access-ordered linked hash map evicts the least recently used name once the size limit is reached
+        l1 = Collections.synchronizedMap(new LinkedHashMap<String, CachedName>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedName> eldest) {
+                return size() > l1MaxSize;
+            }
+        });
+        listenerContainer.addMessageListener(this::onInvalidation, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    // returns 'steamID -> nickname' for all ids found in L1 or L2; ids missing in both are left out
+    public Map<String, String> getAll(Collection<String> steamIds) {
+        Map<String, String> names = new HashMap<>();
+        List<String> l1Misses = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        for (String steamId : steamIds) {
+            CachedName cached = l1.get(steamId);
+            if (cached != null && cached.expiresAt() > now) {
+                names.put(steamId, cached.name());
+            } else {
+                l1Misses.add(steamId);
+            }
+        }
+
+        countLookups("player_names_l1", names.size(), l1Misses.size());
+        if (l1Misses.isEmpty()) return names;
+
+        int l1Hits = names.size();
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(l1Misses.stream().map(id -> KEY_PREFIX + id).toList());
+            if (values != null) {
+                for (int i = 0; i < l1Misses.size(); i++) {
+                    String name = values.get(i);
+                    if (name != null) {
+                        names.put(l1Misses.get(i), name);
+                        putLocal(l1Misses.get(i), name, now);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Could not read cached player names: {}", e.getMessage());
+        }
+
+        int l2Hits = names.size() - l1Hits;
+        countLookups("player_names_l2", l2Hits, l1Misses.size() - l2Hits);
+        return names;
+    }
+
+    // stores freshly fetched names in both tiers and tells other replicas to drop their stale copies
+    public void putAll(Map<String, String> names) {
+        if (names.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+        names.forEach((steamId, name) -> putLocal(steamId, name, now));
+
+        try {
+            long ttlSeconds = Duration.ofHours(ttlHours).toSeconds();
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                names.forEach((steamId, name) -> connection.stringCommands().setEx(
+                        (KEY_PREFIX + steamId).getBytes(StandardCharsets.UTF_8),
+                        ttlSeconds,
+                        name.getBytes(StandardCharsets.UTF_8)));
+                return null;
+            });
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, instanceId + MESSAGE_SEPARATOR + String.join(",", names.keySet()));
+        } catch (Exception e) {
+            log.warn("Could not cache player names: {}", e.getMessage());
+        }
+    }
+
+    private void countLookups(String tier, int hits, int misses) {
+        meterRegistry.counter("cache.lookups", "cache", tier, "result", "hit").increment(hits);
+        meterRegistry.counter("cache.lookups", "cache", tier, "result", "miss").increment(misses);
+    }
+
+    private void putLocal(String steamId, String name, long now) {
+        l1.put(steamId, new CachedName(name, now + Duration.ofMinutes(l1TtlMinutes).toMillis()));
+    }
+
+    private void onInvalidation(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(MESSAGE_SEPARATOR);
+        if (separator < 0 || body.substring(0, separator).equals(instanceId)) return;
+
+        String[] steamIds = body.substring(separator + 1).split(",");
+        for (String steamId : steamIds) {
+            l1.remove(steamId);
+        }
+        log.debug("Invalidated {} player names refreshed by another replica", steamIds.length);
+    }
+}
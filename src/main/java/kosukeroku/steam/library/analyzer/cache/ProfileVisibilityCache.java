@@ -0,0 +1,51 @@
+package kosukeroku.steam.library.analyzer.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// short-lived in-heap memory of which parts of which profiles are private, so hidden users (e.g. private friends
+// on every leaderboard run) are skipped without any network I/O until the ttl runs out and they are probed again
+@Slf4j
+@Component
+public class ProfileVisibilityCache {
+
+    public enum Section {
+        LIBRARY,      // GetOwnedGames returns no games
+        FRIENDS,      // GetFriendList answers 401
+        ACHIEVEMENTS  // GetPlayerAchievements answers 403
+    }
+
+    private static final int CLEANUP_THRESHOLD = 10_000; // expired entries are purged once a section holds this many
+
+    private final Map<Section, Map<String, Long>> hiddenUntil = new EnumMap<>(Section.class);
+    private final long ttlMillis;
+
+    public ProfileVisibilityCache(@Value("${app.cache.visibility.ttl-minutes:15}") long ttlMinutes) {
+        this.ttlMillis = Duration.ofMinutes(ttlMinutes).toMillis();
+        for (Section section : Section.values()) {
+            hiddenUntil.put(section, new ConcurrentHashMap<>());
+        }
+    }
+
+    public boolean isHidden(Section section, String steamId) {
+        Long expiresAt = hiddenUntil.get(section).get(steamId);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    public void markHidden(Section section, String steamId) {
+        Map<String, Long> entries = hiddenUntil.get(section);
+        long now = System.currentTimeMillis();
+
+        if (entries.size() >= CLEANUP_THRESHOLD) {
+            entries.values().removeIf(expiresAt -> expiresAt <= now);
+        }
+        entries.put(steamId, now + ttlMillis);
+        log.debug("Remembered {} of {} as hidden", section, steamId);
+    }
+}
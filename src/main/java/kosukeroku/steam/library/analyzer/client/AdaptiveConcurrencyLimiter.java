@@ -0,0 +1,183 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// limits concurrent calls to one steam endpoint and adapts the limit the way AIMD congestion control does:
+// every successful call grows the limit additively (by about one per limit-sized batch of calls), while
+// throttling (429), server errors, timeouts or latency rising well above the no-load latency shrink it
+// multiplicatively. calls over the limit wait in a queue instead of being sent.
+// only successful calls are latency samples: fast 4xx answers (e.g. private profiles) would drag the no-load
+// latency down, and endpoints whose latency depends on the response size can have the latency signal disabled
+public class AdaptiveConcurrencyLimiter {
+
+    // utility record for exposing limiter state
+    public record State(String endpoint, int limit, int inFlight, int queued, long noLoadLatencyMillis, long latencyMillis) {}
+
+    private enum Outcome { SUCCESS, CLIENT_ERROR, OVERLOAD }
+
+    // a call waiting for a slot; granted is guarded by the limiter
+    private static final class Waiter {
+        private final MonoSink<Long> sink;
+        private boolean granted;
+
+        private Waiter(MonoSink<Long> sink) {
+            this.sink = sink;
+        }
+    }
+
+    private static final double LATENCY_SMOOTHING = 0.2; // weight of a new sample in the smoothed latency
+    private static final double NO_LOAD_LATENCY_DRIFT = 1.01; // lets the no-load latency recover after a faster period ends
+
+    private final String endpoint;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final boolean latencySignal;
+
+    private final Queue<Waiter> pending = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double noLoadLatencyNanos = Double.MAX_VALUE;
+    private double smoothedLatencyNanos;
+
+    public AdaptiveConcurrencyLimiter(String endpoint, int initialLimit, int minLimit, int maxLimit,
+                                      double backoffRatio, double latencyTolerance, boolean latencySignal) {
+        this.endpoint = endpoint;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.latencySignal = latencySignal;
+    }
+
+    // subscribes to the call once a slot is free and releases the slot with the call's outcome; a cancel racing
+    // with the call's completion must not give the slot back twice, so only the first signal releases it
+    public <T> Mono<T> run(Mono<T> call) {
+        return acquire().flatMap(startNanos -> {
+            AtomicBoolean released = new AtomicBoolean();
+            return call
+                    .doOnSuccess(value -> releaseOnce(released, startNanos, Outcome.SUCCESS))
+                    .doOnError(e -> releaseOnce(released, startNanos, isOverload(e) ? Outcome.OVERLOAD : Outcome.CLIENT_ERROR))
+                    .doOnCancel(() -> releaseOnce(released, startNanos, null));
+        });
+    }
+
+    public synchronized State getState() {
+        return new State(endpoint, (int) limit, inFlight, pending.size(),
+                noLoadLatencyNanos == Double.MAX_VALUE ? 0 : (long) (noLoadLatencyNanos / 1_000_000),
+                (long) (smoothedLatencyNanos / 1_000_000));
+    }
+
+    // completes with the start time of the call once it may be sent
+    private Mono<Long> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            sink.onCancel(() -> cancel(waiter));
+
+            boolean granted;
+            synchronized (this) {
+                granted = inFlight < (int) limit;
+                if (granted) {
+                    inFlight++;
+                    waiter.granted = true;
+                } else {
+                    pending.add(waiter);
+                }
+            }
+
+            if (granted) {
+                sink.success(System.nanoTime());
+            }
+        });
+    }
+
+    // the sink only reports a cancel that came before it delivered the start time, so a waiter that was granted
+    // a slot and cancelled anyway never starts its call, and the slot has to be given back here
+    private void cancel(Waiter waiter) {
+        boolean granted;
+        synchronized (this) {
+            granted = waiter.granted;
+            if (!granted) {
+                pending.remove(waiter);
+            }
+        }
+
+        if (granted) {
+            release(0, null);
+        }
+    }
+
+    private void releaseOnce(AtomicBoolean released, long startNanos, Outcome outcome) {
+        if (released.compareAndSet(false, true)) {
+            release(startNanos, outcome);
+        }
+    }
+
+    // outcome is null for cancelled calls, which don't tell anything about the endpoint's load
+    private void release(long startNanos, Outcome outcome) {
+        List<Waiter> granted = new ArrayList<>();
+
+        synchronized (this) {
+            inFlight--;
+            if (outcome != null) {
+                adjustLimit(System.nanoTime() - startNanos, outcome);
+            }
+
+            while (inFlight < (int) limit && !pending.isEmpty()) {
+                Waiter waiter = pending.poll();
+                waiter.granted = true;
+                inFlight++;
+                granted.add(waiter);
+            }
+        }
+
+        // waiting calls are started outside the lock
+        long now = System.nanoTime();
+        granted.forEach(waiter -> waiter.sink.success(now));
+    }
+
+    private void adjustLimit(long latencyNanos, Outcome outcome) {
+        boolean latencyRising = false;
+        if (outcome == Outcome.SUCCESS && latencySignal) {
+            smoothedLatencyNanos = smoothedLatencyNanos == 0
+                    ? latencyNanos
+                    : smoothedLatencyNanos * (1 - LATENCY_SMOOTHING) + latencyNanos * LATENCY_SMOOTHING;
+            noLoadLatencyNanos = Math.min(noLoadLatencyNanos * NO_LOAD_LATENCY_DRIFT, latencyNanos);
+
+            latencyRising = smoothedLatencyNanos > noLoadLatencyNanos * latencyTolerance;
+        }
+
+        if (outcome == Outcome.OVERLOAD) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (latencyRising) {
+            // milder backoff than for an explicit overload signal
+            limit = Math.max(minLimit, limit * Math.sqrt(backoffRatio));
+            smoothedLatencyNanos = noLoadLatencyNanos; // gives the reduced limit time to take effect
+        } else if (inFlight + 1 >= (int) limit) {
+            // growing only while the limit is actually used
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private static boolean isOverload(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().value() == 429 || responseException.getStatusCode().is5xxServerError();
+        }
+        // timeouts reach us wrapped into a request exception
+        Throwable cause = e instanceof WebClientRequestException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof TimeoutException || cause instanceof ReadTimeoutException;
+    }
+}
@@ -0,0 +1,43 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+// runs a call through its endpoint's limiter and, once it has been running for the given delay, sends a second
+// copy through the same limiter; whichever answers first wins and the other one is cancelled.
+// the delay only starts when the original is granted a slot: a call waiting in the queue isn't slow at steam,
+// and a copy of it would add load right when the limiter has cut concurrency.
+// an attempt that fails while the other one is still running waits for it, so the copy can rescue a failing
+// original; only when both fail the last failure is passed on
+final class Hedging {
+
+    private Hedging() {
+    }
+
+    // sendCopy is asked right before the copy would be sent, e.g. to spend the retry budget
+    static <T> Mono<T> hedged(AdaptiveConcurrencyLimiter limiter, Mono<T> call, Duration delay, BooleanSupplier sendCopy) {
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> granted = Sinks.empty();
+            AtomicInteger running = new AtomicInteger(1);
+            Function<Throwable, Mono<T>> failure = e -> running.decrementAndGet() > 0 ? Mono.never() : Mono.error(e);
+
+            Mono<T> original = limiter.run(Mono.defer(() -> {
+                granted.tryEmitEmpty();
+                return call;
+            }));
+            Mono<T> copy = granted.asMono()
+                    .then(Mono.delay(delay))
+                    // the copy is only sent while the original is still running
+                    .filter(tick -> sendCopy.getAsBoolean() && running.getAndUpdate(count -> count > 0 ? count + 1 : count) > 0)
+                    .flatMap(tick -> limiter.run(call).onErrorResume(failure))
+                    .switchIfEmpty(Mono.never());
+
+            return Mono.firstWithSignal(original.onErrorResume(failure), copy);
+        });
+    }
+}
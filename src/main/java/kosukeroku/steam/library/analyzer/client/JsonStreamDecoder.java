@@ -0,0 +1,115 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+// decodes json bodies token by token with jackson's non-blocking parser: chunks of a body are parsed as they arrive
+// and released right away, so the body is never buffered as a whole and there is no limit on its size.
+// a token reader picks the fields it needs into its own structures, other values are skipped without becoming strings
+public final class JsonStreamDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int INITIAL_CHUNK_SIZE = 8192;
+
+    // receives every token of one document and builds the result out of it
+    public interface TokenReader<T> {
+        void onToken(JsonToken token, JsonParser parser) throws IOException;
+
+        // null if the document had nothing to read
+        T result();
+    }
+
+    private JsonStreamDecoder() {}
+
+    // a new reader is taken for every subscription, the result is empty if the reader has nothing
+    public static <T> Mono<T> decode(Flux<DataBuffer> body, Supplier<? extends TokenReader<T>> readerFactory) {
+        return Mono.defer(() -> {
+            Feed<T> feed;
+            try {
+                feed = new Feed<>(readerFactory.get());
+            } catch (IOException e) {
+                return Mono.error(e);
+            }
+
+            return body
+                    .<Void>handle((buffer, sink) -> {
+                        try {
+                            feed.accept(buffer);
+                        } catch (IOException e) {
+                            sink.error(e);
+                        }
+                    })
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .then(Mono.fromCallable(feed::finish))
+                    .doFinally(signal -> feed.close());
+        });
+    }
+
+    // reads a document that is already in memory (e.g. cached json) with the same reader
+    public static <T> T read(JsonParser parser, TokenReader<T> reader) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            reader.onToken(token, parser);
+        }
+        return reader.result();
+    }
+
+    private static final class Feed<T> {
+        private final TokenReader<T> reader;
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private byte[] chunk = new byte[INITIAL_CHUNK_SIZE]; // reused, the parser is done with it once it asks for more
+
+        Feed(TokenReader<T> reader) throws IOException {
+            this.reader = reader;
+            this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        void accept(DataBuffer buffer) throws IOException {
+            int length = buffer.readableByteCount();
+            try {
+                if (length > chunk.length) {
+                    chunk = new byte[Math.max(length, chunk.length * 2)];
+                }
+                buffer.read(chunk, 0, length);
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+
+            feeder.feedInput(chunk, 0, length);
+            drain();
+        }
+
+        T finish() throws IOException {
+            feeder.endOfInput();
+            drain();
+            return reader.result();
+        }
+
+        void close() {
+            try {
+                parser.close();
+            } catch (IOException ignored) {
+                // nothing is held outside the heap
+            }
+        }
+
+        // hands over every token that is complete in the input fed so far
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                reader.onToken(token, parser);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import java.util.Arrays;
+
+// latencies of the last successful calls to one endpoint and their 95th percentile, which is recomputed
+// every few calls instead of on every read, so hedging decisions cost a volatile read
+class LatencyTracker {
+
+    private static final int WINDOW = 256;
+    private static final int RECOMPUTE_EVERY = 32;
+    private static final int MIN_SAMPLES = 50; // no percentile until there are this many samples
+
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+    private int sinceRecompute;
+    private volatile long p95Nanos = -1;
+
+    synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % WINDOW;
+        count = Math.min(count + 1, WINDOW);
+
+        if (++sinceRecompute >= RECOMPUTE_EVERY && count >= MIN_SAMPLES) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.ceil(count * 0.95) - 1];
+            sinceRecompute = 0;
+        }
+    }
+
+    // -1 until there are enough samples
+    long p95Nanos() {
+        return p95Nanos;
+    }
+}
@@ -0,0 +1,118 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import kosukeroku.steam.library.analyzer.util.CompactLibrary;
+
+import java.io.IOException;
+
+// reads appid, name and playtimes of every game of a GetOwnedGames response straight into a compact library,
+// icons and other fields are skipped. names the dictionary already holds are compared in place, so known games
+// don't allocate a string. the result is null if the response has no games list, which is how steam hides a library
+public class OwnedGamesReader implements JsonStreamDecoder.TokenReader<CompactLibrary> {
+
+    // nesting of {"response": {"games": [{...}]}}
+    private static final int RESPONSE_DEPTH = 2;
+    private static final int GAMES_DEPTH = 3;
+    private static final int GAME_DEPTH = 4;
+
+    private final GameNameDictionary names;
+    private final CompactLibrary.Builder library;
+    private int depth;
+    private boolean inResponse;
+    private boolean inGames;
+    private boolean hasGames;
+
+    // fields of the game being read
+    private int appId;
+    private String name;
+    private int playtime;
+    private int recentPlaytime;
+
+    public OwnedGamesReader(GameNameDictionary names) {
+        this.names = names;
+        this.library = CompactLibrary.builder(names);
+    }
+
+    @Override
+    public void onToken(JsonToken token, JsonParser parser) throws IOException {
+        switch (token) {
+            case START_OBJECT, START_ARRAY -> {
+                depth++;
+                String field = parser.currentName();
+
+                if (depth == RESPONSE_DEPTH && token == JsonToken.START_OBJECT && "response".equals(field)) {
+                    inResponse = true;
+                } else if (depth == GAMES_DEPTH && inResponse && token == JsonToken.START_ARRAY && "games".equals(field)) {
+                    inGames = true;
+                    hasGames = true;
+                } else if (depth == GAME_DEPTH && inGames) {
+                    appId = 0;
+                    name = null;
+                    playtime = 0;
+                    recentPlaytime = 0;
+                }
+            }
+            case END_OBJECT, END_ARRAY -> {
+                if (depth == GAME_DEPTH && inGames && appId > 0) {
+                    library.add(appId, name, playtime, recentPlaytime);
+                } else if (depth == GAMES_DEPTH) {
+                    inGames = false;
+                } else if (depth == RESPONSE_DEPTH) {
+                    inResponse = false;
+                }
+                depth--;
+            }
+            case VALUE_NUMBER_INT, VALUE_STRING -> {
+                if (depth == GAME_DEPTH && inGames) {
+                    readGameField(token, parser);
+                }
+            }
+            default -> {
+                // field names are taken from the parser's context, other values are not used
+            }
+        }
+    }
+
+    @Override
+    public CompactLibrary result() {
+        return hasGames ? library.build() : null;
+    }
+
+    private void readGameField(JsonToken token, JsonParser parser) throws IOException {
+        String field = parser.currentName();
+
+        if (token == JsonToken.VALUE_STRING) {
+            if ("name".equals(field)) name = readName(parser);
+            return;
+        }
+
+        if ("appid".equals(field)) {
+            appId = parser.getIntValue();
+        } else if ("playtime_forever".equals(field)) {
+            playtime = parser.getIntValue();
+        } else if ("playtime_2weeks".equals(field)) {
+            recentPlaytime = parser.getIntValue();
+        }
+    }
+
+    // steam sends appid before name, so the name can be checked against the known one before a string is made
+    private String readName(JsonParser parser) throws IOException {
+        String known = appId > 0 ? names.get(appId) : null;
+        if (known != null && textEquals(parser, known)) return known;
+        return parser.getText();
+    }
+
+    private static boolean textEquals(JsonParser parser, String text) throws IOException {
+        int length = parser.getTextLength();
+        if (length != text.length()) return false;
+
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != text.charAt(i)) return false;
+        }
+        return true;
+    }
+}
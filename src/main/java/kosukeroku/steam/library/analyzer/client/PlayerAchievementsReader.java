@@ -0,0 +1,131 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import kosukeroku.steam.library.analyzer.responseDTO.PlayerAchievements;
+import kosukeroku.steam.library.analyzer.responseDTO.PlayerAchievements.UnlockedAchievement;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+// counts achievements of a GetPlayerAchievements response while it is parsed and keeps only the most recent unlocks.
+// names are copied into reusable buffers and become strings only for the unlocks that are kept,
+// descriptions are skipped. the result is null for an empty document
+public class PlayerAchievementsReader implements JsonStreamDecoder.TokenReader<PlayerAchievements> {
+
+    // nesting of {"playerstats": {"achievements": [{...}], "success": true}}
+    private static final int PLAYER_STATS_DEPTH = 2;
+    private static final int ACHIEVEMENTS_DEPTH = 3;
+    private static final int ACHIEVEMENT_DEPTH = 4;
+
+    private final UnlockedAchievement[] recent; // most recent first
+    private int recentCount;
+
+    private int depth;
+    private boolean read;
+    private boolean inPlayerStats;
+    private boolean inAchievements;
+    private boolean success;
+    private int total;
+    private int completed;
+
+    // fields of the achievement being read
+    private final StringBuilder apiName = new StringBuilder();
+    private final StringBuilder name = new StringBuilder();
+    private boolean achieved;
+    private long unlockTime;
+
+    public PlayerAchievementsReader(int recentUnlocks) {
+        this.recent = new UnlockedAchievement[recentUnlocks];
+    }
+
+    @Override
+    public void onToken(JsonToken token, JsonParser parser) throws IOException {
+        read = true;
+
+        switch (token) {
+            case START_OBJECT, START_ARRAY -> {
+                depth++;
+                String field = parser.currentName();
+
+                if (depth == PLAYER_STATS_DEPTH && token == JsonToken.START_OBJECT && "playerstats".equals(field)) {
+                    inPlayerStats = true;
+                } else if (depth == ACHIEVEMENTS_DEPTH && inPlayerStats && token == JsonToken.START_ARRAY && "achievements".equals(field)) {
+                    inAchievements = true;
+                } else if (depth == ACHIEVEMENT_DEPTH && inAchievements) {
+                    apiName.setLength(0);
+                    name.setLength(0);
+                    achieved = false;
+                    unlockTime = 0;
+                }
+            }
+            case END_OBJECT, END_ARRAY -> {
+                if (depth == ACHIEVEMENT_DEPTH && inAchievements) {
+                    addAchievement();
+                } else if (depth == ACHIEVEMENTS_DEPTH) {
+                    inAchievements = false;
+                } else if (depth == PLAYER_STATS_DEPTH) {
+                    inPlayerStats = false;
+                }
+                depth--;
+            }
+            case VALUE_TRUE, VALUE_FALSE -> {
+                if (depth == PLAYER_STATS_DEPTH && inPlayerStats && "success".equals(parser.currentName())) {
+                    success = token == JsonToken.VALUE_TRUE;
+                }
+            }
+            case VALUE_NUMBER_INT, VALUE_STRING -> {
+                if (depth == ACHIEVEMENT_DEPTH && inAchievements) {
+                    readAchievementField(token, parser);
+                }
+            }
+            default -> {
+                // field names are taken from the parser's context, other values are not used
+            }
+        }
+    }
+
+    @Override
+    public PlayerAchievements result() {
+        if (!read) return null;
+        if (!success) return PlayerAchievements.NONE;
+        return new PlayerAchievements(true, total, completed, List.of(Arrays.copyOf(recent, recentCount)));
+    }
+
+    private void readAchievementField(JsonToken token, JsonParser parser) throws IOException {
+        String field = parser.currentName();
+
+        if (token == JsonToken.VALUE_STRING) {
+            if ("apiname".equals(field)) {
+                apiName.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            } else if ("name".equals(field)) {
+                name.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            }
+            return;
+        }
+
+        if ("achieved".equals(field)) {
+            achieved = parser.getIntValue() == 1;
+        } else if ("unlocktime".equals(field)) {
+            unlockTime = parser.getLongValue();
+        }
+    }
+
+    private void addAchievement() {
+        total++;
+        if (!achieved) return;
+        completed++;
+
+        if (recent.length == 0) return;
+        if (recentCount == recent.length && unlockTime <= recent[recentCount - 1].unlockTime()) return;
+
+        // insertion into the few kept unlocks, the least recent one falls out when they are full
+        int position = recentCount < recent.length ? recentCount++ : recentCount - 1;
+        while (position > 0 && recent[position - 1].unlockTime() < unlockTime) {
+            recent[position] = recent[position - 1];
+            position--;
+        }
+        recent[position] = new UnlockedAchievement(apiName.toString(), name.isEmpty() ? null : name.toString(), unlockTime);
+    }
+}
@@ -0,0 +1,67 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import java.util.function.LongSupplier;
+
+// caps retries and hedged copies of requests to a share of regular requests, like a token bucket: every request
+// deposits a fraction of a token and every extra attempt withdraws a whole one, while a small refill per second keeps
+// a few extra attempts possible when traffic is low. when steam fails for everyone, extra attempts stop
+// at that share of the traffic instead of multiplying it
+public class RetryBudget {
+
+    // utility record for exposing budget state
+    public record State(double balance, long granted, long denied) {}
+
+    private static final double MAX_BALANCE_SECONDS = 10; // the balance can't grow beyond this many seconds of refill
+
+    private final double ratio;
+    private final double minPerSecond;
+    private final double maxBalance;
+    private final LongSupplier nanoTime;
+
+    private double balance;
+    private long lastRefillNanos;
+    private long granted;
+    private long denied;
+
+    public RetryBudget(double ratio, double minPerSecond) {
+        this(ratio, minPerSecond, System::nanoTime);
+    }
+
+    // the clock can be replaced, e.g. to check the refill in tests
+    RetryBudget(double ratio, double minPerSecond, LongSupplier nanoTime) {
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        this.maxBalance = Math.max(1, minPerSecond * MAX_BALANCE_SECONDS);
+        this.nanoTime = nanoTime;
+        this.balance = maxBalance;
+        this.lastRefillNanos = nanoTime.getAsLong();
+    }
+
+    public synchronized void onRequest() {
+        refill();
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    // withdraws one extra attempt if the budget allows it
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (balance >= 1) {
+            balance--;
+            granted++;
+            return true;
+        }
+        denied++;
+        return false;
+    }
+
+    public synchronized State getState() {
+        refill();
+        return new State(balance, granted, denied);
+    }
+
+    private void refill() {
+        long now = nanoTime.getAsLong();
+        balance = Math.min(maxBalance, balance + (now - lastRefillNanos) / 1e9 * minPerSecond);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,42 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// coalesces identical concurrent requests: while a call for a key is in flight, every other caller with
+// the same key subscribes to that call instead of sending its own. the entry is dropped once the call
+// finishes, so nothing is cached beyond the lifetime of the request itself
+public class SingleFlight {
+
+    // utility record for exposing coalescing stats
+    public record Stats(long calls, long sharedCalls, int inFlight) {}
+
+    private final Map<String, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong sharedCalls = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> execute(String key, Mono<T> call) {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+
+            boolean[] started = {false};
+            Mono<T> flight = (Mono<T>) inFlight.computeIfAbsent(key, k -> {
+                started[0] = true;
+                return call.doFinally(signal -> inFlight.remove(k)).cache();
+            });
+
+            if (!started[0]) {
+                sharedCalls.incrementAndGet();
+            }
+            return flight;
+        });
+    }
+
+    public Stats getStats() {
+        return new Stats(calls.get(), sharedCalls.get(), inFlight.size());
+    }
+}
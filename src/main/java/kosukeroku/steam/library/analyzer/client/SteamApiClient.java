@@ -0,0 +1,365 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.handler.timeout.ReadTimeoutException;
+import jakarta.annotation.PostConstruct;
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import kosukeroku.steam.library.analyzer.exception.SteamCallLimitException;
+import kosukeroku.steam.library.analyzer.exception.SteamPrivateProfileException;
+import kosukeroku.steam.library.analyzer.responseDTO.*;
+import kosukeroku.steam.library.analyzer.util.CompactLibrary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// thin non-blocking wrapper over steam web api, every method returns a lazy Mono of the raw response.
+// calls to every endpoint go through its own adaptive concurrency limiter, so we don't get throttled,
+// and identical calls in flight at the same time (e.g. several chats analyzing the same profile) are sent once.
+// every call sent to steam is timed per endpoint and outcome, limiters and coalescing are exported as gauges.
+// libraries and achievements, the largest responses, are decoded as a stream right into compact structures.
+// transient failures are retried with jittered backoff, and calls slower than their endpoint's recent p95 latency
+// are hedged with a second copy; both kinds of extra attempts are capped by a shared retry budget
+@Slf4j
+@Component
+public class SteamApiClient {
+
+    // key of an AtomicInteger in the subscriber context that counts requests actually sent to steam for the caller;
+    // a call joined through single-flight runs in the context of the caller that started it, so it's counted once
+    public static final String SENT_CALLS_CONTEXT_KEY = "steam.sent.calls";
+
+    // the same kind of counter for one caller's subscription, e.g. a button click, whatever fetch context its calls
+    // go through; calls started by someone else sharing the fetch context (e.g. a prefetch) are not counted in it
+    public static final String CALLER_SENT_CALLS_CONTEXT_KEY = "steam.caller.sent.calls";
+
+    // key of an AtomicInteger in the subscriber context with the number of requests the caller may still send;
+    // requests beyond it (retries and hedged copies included) fail with SteamCallLimitException without being sent
+    public static final String CALL_LIMIT_CONTEXT_KEY = "steam.call.limit";
+
+    private final WebClient webClient;
+    private final MeterRegistry meterRegistry;
+    private final GameNameDictionary gameNames;
+    private final Map<SteamEndpoint, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(SteamEndpoint.class);
+    private final Map<SteamEndpoint, Duration> responseTimeouts = new EnumMap<>(SteamEndpoint.class);
+    private final Map<SteamEndpoint, LatencyTracker> latencies = new EnumMap<>(SteamEndpoint.class);
+    private final Set<SteamEndpoint> hedgedEndpoints = EnumSet.noneOf(SteamEndpoint.class);
+    private final SingleFlight singleFlight = new SingleFlight();
+    private RetryBudget retryBudget;
+
+    @Value("${steam.api.key:}")
+    private String steamApiKey;
+
+    @Value("${app.steam.limiter.initial-limit:10}")
+    private Integer initialLimit;
+
+    @Value("${app.steam.limiter.min-limit:1}")
+    private Integer minLimit;
+
+    @Value("${app.steam.limiter.max-limit:50}")
+    private Integer maxLimit;
+
+    // the limit is multiplied by this on 429/5xx responses and timeouts
+    @Value("${app.steam.limiter.backoff-ratio:0.5}")
+    private Double backoffRatio;
+
+    // latency above no-load latency times this is treated as a sign of congestion
+    @Value("${app.steam.limiter.latency-tolerance:2.0}")
+    private Double latencyTolerance;
+
+    // overrides of the endpoints' response timeouts, e.g. GetOwnedGames=20000,GetPlayerAchievements=3000
+    @Value("${app.steam.http.endpoint-timeouts-ms:}")
+    private String endpointTimeouts;
+
+    // retries after the first attempt, for 429/5xx responses, timeouts and connection errors only
+    @Value("${app.steam.retry.max-retries:2}")
+    private Integer maxRetries;
+
+    @Value("${app.steam.retry.min-backoff-ms:200}")
+    private Long minBackoffMs;
+
+    @Value("${app.steam.retry.max-backoff-ms:2000}")
+    private Long maxBackoffMs;
+
+    // share of the backoff that is randomized, so retries of a failed fan-out don't arrive together
+    @Value("${app.steam.retry.jitter:0.5}")
+    private Double jitter;
+
+    // extra attempts (retries and hedges) allowed per regular request, plus a few per second when traffic is low
+    @Value("${app.steam.retry.budget-ratio:0.1}")
+    private Double budgetRatio;
+
+    @Value("${app.steam.retry.budget-min-per-second:5}")
+    private Double budgetMinPerSecond;
+
+    // libraries are left out by default: their latency depends on their size, and a hedged copy of a big one is expensive
+    @Value("${app.steam.hedging.endpoints:GetPlayerAchievements,GetFriendList,GetPlayerSummaries,GetSchemaForGame}")
+    private String hedgingEndpoints;
+
+    // calls are never hedged sooner than this, however fast the endpoint has been
+    @Value("${app.steam.hedging.min-delay-ms:100}")
+    private Long hedgingMinDelayMs;
+
+    // base url can point to a local stand-in of steam api, e.g. for load tests
+    public SteamApiClient(WebClient.Builder webClientBuilder,
+                          HttpClient steamHttpClient,
+                          @Value("${steam.api.base-url:https://api.steampowered.com}") String baseUrl,
+                          MeterRegistry meterRegistry,
+                          GameNameDictionary gameNames) {
+        this.webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(steamHttpClient))
+                .baseUrl(baseUrl)
+                .build();
+        this.meterRegistry = meterRegistry;
+        this.gameNames = gameNames;
+    }
+
+    @PostConstruct
+    void init() {
+        initResponseTimeouts();
+        initRetries();
+
+        for (SteamEndpoint endpoint : SteamEndpoint.values()) {
+            // a library takes as long as it is big, so its latency says nothing about congestion
+            boolean latencySignal = endpoint != SteamEndpoint.GET_OWNED_GAMES;
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(endpoint.getMethodName(),
+                    initialLimit, minLimit, maxLimit, backoffRatio, latencyTolerance, latencySignal);
+            limiters.put(endpoint, limiter);
+
+            Gauge.builder("steam.limiter.limit", limiter, l -> l.getState().limit())
+                    .tag("endpoint", endpoint.getMethodName()).register(meterRegistry);
+            Gauge.builder("steam.limiter.in.flight", limiter, l -> l.getState().inFlight())
+                    .tag("endpoint", endpoint.getMethodName()).register(meterRegistry);
+            Gauge.builder("steam.limiter.queued", limiter, l -> l.getState().queued())
+                    .tag("endpoint", endpoint.getMethodName()).register(meterRegistry);
+        }
+
+        FunctionCounter.builder("steam.single.flight.calls", singleFlight, flight -> flight.getStats().calls())
+                .register(meterRegistry);
+        FunctionCounter.builder("steam.single.flight.shared.calls", singleFlight, flight -> flight.getStats().sharedCalls())
+                .register(meterRegistry);
+    }
+
+    private void initResponseTimeouts() {
+        for (SteamEndpoint endpoint : SteamEndpoint.values()) {
+            responseTimeouts.put(endpoint, Duration.ofMillis(endpoint.getDefaultTimeoutMillis()));
+        }
+
+        for (String override : endpointTimeouts.split(",")) {
+            if (override.isBlank()) continue;
+
+            String[] parts = override.split("=");
+            SteamEndpoint endpoint = Arrays.stream(SteamEndpoint.values())
+                    .filter(candidate -> candidate.getMethodName().equals(parts[0].trim()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown Steam API method in timeouts: " + parts[0]));
+            responseTimeouts.put(endpoint, Duration.ofMillis(Long.parseLong(parts[1].trim())));
+        }
+    }
+
+    private void initRetries() {
+        retryBudget = new RetryBudget(budgetRatio, budgetMinPerSecond);
+        Gauge.builder("steam.retry.budget.balance", retryBudget, budget -> budget.getState().balance())
+                .register(meterRegistry);
+
+        for (SteamEndpoint endpoint : SteamEndpoint.values()) {
+            latencies.put(endpoint, new LatencyTracker());
+            if (Arrays.asList(hedgingEndpoints.split(",")).contains(endpoint.getMethodName())) {
+                hedgedEndpoints.add(endpoint);
+            }
+        }
+    }
+
+    public List<AdaptiveConcurrencyLimiter.State> getLimiterStates() {
+        return limiters.values().stream()
+                .map(AdaptiveConcurrencyLimiter::getState)
+                .toList();
+    }
+
+    public SingleFlight.Stats getSingleFlightStats() {
+        return singleFlight.getStats();
+    }
+
+    public RetryBudget.State getRetryBudgetState() {
+        return retryBudget.getState();
+    }
+
+    // the longest a call to the endpoint can take before it fails for good: every attempt (and its hedged copy,
+    // sent at most a timeout later) running into the response timeout, plus the longest backoffs between them.
+    // the wait for a limiter slot is not included
+    public Duration maxCallDuration(SteamEndpoint endpoint) {
+        Duration timeout = responseTimeouts.get(endpoint);
+        Duration attempt = hedgedEndpoints.contains(endpoint) ? timeout.multipliedBy(2) : timeout;
+        return attempt.multipliedBy(maxRetries + 1).plus(Duration.ofMillis(maxBackoffMs).multipliedBy(maxRetries));
+    }
+
+    public Mono<SteamVanityResponse> resolveVanityUrl(String vanityUrl) {
+        return get(SteamEndpoint.RESOLVE_VANITY_URL, Map.of("vanityurl", vanityUrl), SteamVanityResponse.class);
+    }
+
+    // steamIds is a comma-separated list
+    public Mono<SteamPlayerSummariesResponse> getPlayerSummaries(String steamIds) {
+        return get(SteamEndpoint.GET_PLAYER_SUMMARIES, Map.of("steamids", steamIds), SteamPlayerSummariesResponse.class);
+    }
+
+    // fails with SteamPrivateProfileException if steam answers without a games list;
+    // without appinfo the response has no names and is a fraction of the size
+    public Mono<CompactLibrary> getOwnedGames(String steamId, boolean includeAppInfo) {
+        return stream(SteamEndpoint.GET_OWNED_GAMES,
+                Map.of("steamid", steamId, "include_appinfo", includeAppInfo ? 1 : 0, "format", "json"),
+                body -> JsonStreamDecoder.decode(body, () -> new OwnedGamesReader(gameNames)))
+                .switchIfEmpty(Mono.error(() -> new SteamPrivateProfileException(steamId)));
+    }
+
+    // only the given number of most recent unlocks is kept out of the achievement list. the response is not
+    // localized, so unlocks have apinames only, names come from the game's schema
+    public Mono<PlayerAchievements> getPlayerAchievements(String steamId, String appId, int recentUnlocks) {
+        return stream(SteamEndpoint.GET_PLAYER_ACHIEVEMENTS,
+                Map.of("steamid", steamId, "appid", appId),
+                body -> JsonStreamDecoder.decode(body, () -> new PlayerAchievementsReader(recentUnlocks)));
+    }
+
+    // language is steam's language name, e.g. english
+    public Mono<SteamGameSchemaResponse> getSchemaForGame(String appId, String language) {
+        return get(SteamEndpoint.GET_SCHEMA_FOR_GAME, Map.of("appid", appId, "l", language), SteamGameSchemaResponse.class);
+    }
+
+    public Mono<SteamFriendsResponse> getFriendList(String steamId) {
+        return get(SteamEndpoint.GET_FRIEND_LIST,
+                Map.of("steamid", steamId, "relationship", "friend"),
+                SteamFriendsResponse.class);
+    }
+
+    private <T> Mono<T> get(SteamEndpoint endpoint, Map<String, ?> params, Class<T> responseType) {
+        return call(endpoint, params, response -> response.bodyToMono(responseType));
+    }
+
+    // the body is passed to the decoder as raw buffers, which also bypasses the codecs' in-memory size limit
+    private <T> Mono<T> stream(SteamEndpoint endpoint, Map<String, ?> params, Function<Flux<DataBuffer>, Mono<T>> bodyDecoder) {
+        return call(endpoint, params, response -> bodyDecoder.apply(response.bodyToFlux(DataBuffer.class)));
+    }
+
+    private <T> Mono<T> call(SteamEndpoint endpoint, Map<String, ?> params, Function<WebClient.ResponseSpec, Mono<T>> bodyDecoder) {
+        Mono<T> request = bodyDecoder.apply(webClient.get()
+                .uri(uriBuilder -> {
+                    uriBuilder.path(endpoint.getPath()).queryParam("key", steamApiKey);
+                    params.forEach((name, value) -> uriBuilder.queryParam(name, value));
+                    return uriBuilder.build();
+                })
+                .httpRequest(httpRequest -> {
+                    HttpClientRequest nativeRequest = httpRequest.getNativeRequest();
+                    nativeRequest.responseTimeout(responseTimeouts.get(endpoint));
+                })
+                .retrieve());
+        Mono<T> attempt = timed(endpoint, request);
+
+        // a call deposits into the retry budget once, however many attempts it takes
+        Mono<T> resilientCall = Mono.defer(() -> {
+            retryBudget.onRequest();
+            return hedged(endpoint, attempt).retryWhen(retrySpec(endpoint));
+        });
+
+        // coalescing happens before the limiter, so callers joining a call in flight don't take a slot
+        String key = endpoint.name() + new TreeMap<>(params);
+        return singleFlight.execute(key, resilientCall);
+    }
+
+    // sends the attempt through the endpoint's limiter; calls taking longer than the endpoint's recent p95 latency
+    // since they got a slot are hedged with a second copy
+    private <T> Mono<T> hedged(SteamEndpoint endpoint, Mono<T> attempt) {
+        AdaptiveConcurrencyLimiter limiter = limiters.get(endpoint);
+        if (!hedgedEndpoints.contains(endpoint)) return limiter.run(attempt);
+
+        return Mono.defer(() -> {
+            long p95Nanos = latencies.get(endpoint).p95Nanos();
+            if (p95Nanos < 0) return limiter.run(attempt); // not enough calls to know the endpoint's latency yet
+
+            Duration delay = Duration.ofNanos(Math.max(p95Nanos, Duration.ofMillis(hedgingMinDelayMs).toNanos()));
+            return Hedging.hedged(limiter, attempt, delay, () -> acquireExtraAttempt(endpoint, "hedge"));
+        });
+    }
+
+    private Retry retrySpec(SteamEndpoint endpoint) {
+        return Retry.backoff(maxRetries, Duration.ofMillis(minBackoffMs))
+                .maxBackoff(Duration.ofMillis(maxBackoffMs))
+                .jitter(jitter)
+                .filter(SteamApiClient::isTransient)
+                // the budget is checked right before a retry, so attempts that won't be retried anyway don't spend it
+                .doBeforeRetryAsync(signal -> {
+                    if (!acquireExtraAttempt(endpoint, "retry")) return Mono.error(signal.failure());
+
+                    log.debug("Retrying {} after {}", endpoint.getMethodName(), outcomeOf(signal.failure()));
+                    return Mono.empty();
+                })
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    private boolean acquireExtraAttempt(SteamEndpoint endpoint, String kind) {
+        boolean acquired = retryBudget.tryAcquire();
+        meterRegistry.counter("steam.api.extra.attempts", "endpoint", endpoint.getMethodName(),
+                "kind", kind, "result", acquired ? "sent" : "over_budget").increment();
+        return acquired;
+    }
+
+    // times the call itself, without the time spent waiting for a limiter slot, and counts it as sent
+    private <T> Mono<T> timed(SteamEndpoint endpoint, Mono<T> request) {
+        return Mono.deferContextual(subscriberContext -> {
+            Optional<AtomicInteger> callLimit = subscriberContext.getOrEmpty(CALL_LIMIT_CONTEXT_KEY);
+            if (callLimit.isPresent() && callLimit.get().getAndDecrement() <= 0) {
+                return Mono.error(new SteamCallLimitException());
+            }
+            subscriberContext.<AtomicInteger>getOrEmpty(SENT_CALLS_CONTEXT_KEY).ifPresent(AtomicInteger::incrementAndGet);
+            subscriberContext.<AtomicInteger>getOrEmpty(CALLER_SENT_CALLS_CONTEXT_KEY).ifPresent(AtomicInteger::incrementAndGet);
+
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return request
+                    .doOnSuccess(value -> latencies.get(endpoint).record(sample.stop(callTimer(endpoint, "success"))))
+                    .doOnError(e -> sample.stop(callTimer(endpoint, outcomeOf(e))))
+                    .doOnCancel(() -> sample.stop(callTimer(endpoint, "cancelled")));
+        });
+    }
+
+    private Timer callTimer(SteamEndpoint endpoint, String outcome) {
+        return Timer.builder("steam.api.calls")
+                .description("Steam Web API calls")
+                .tag("endpoint", endpoint.getMethodName())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // worth another attempt: throttling, server errors, timeouts and failures to connect or to read the response
+    private static boolean isTransient(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().value() == 429 || responseException.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException || e instanceof ReadTimeoutException;
+    }
+
+    private static String outcomeOf(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            if (status == 429) return "throttled";
+            return status >= 500 ? "server_error" : "client_error";
+        }
+        Throwable cause = e instanceof WebClientRequestException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof TimeoutException || cause instanceof ReadTimeoutException ? "timeout" : "error";
+    }
+}
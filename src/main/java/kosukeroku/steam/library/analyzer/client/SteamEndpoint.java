@@ -0,0 +1,20 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+// steam web api endpoints used by the bot
+@Getter
+@RequiredArgsConstructor
+public enum SteamEndpoint {
+    RESOLVE_VANITY_URL("ResolveVanityURL", "/ISteamUser/ResolveVanityURL/v0001/", 5_000),
+    GET_OWNED_GAMES("GetOwnedGames", "/IPlayerService/GetOwnedGames/v0001/", 15_000),
+    GET_PLAYER_ACHIEVEMENTS("GetPlayerAchievements", "/ISteamUserStats/GetPlayerAchievements/v1/", 5_000),
+    GET_FRIEND_LIST("GetFriendList", "/ISteamUser/GetFriendList/v1/", 5_000),
+    GET_PLAYER_SUMMARIES("GetPlayerSummaries", "/ISteamUser/GetPlayerSummaries/v2/", 5_000),
+    GET_SCHEMA_FOR_GAME("GetSchemaForGame", "/ISteamUserStats/GetSchemaForGame/v2/", 10_000);
+
+    private final String methodName; // name of the method in steam api docs
+    private final String path;
+    private final long defaultTimeoutMillis; // response timeout, libraries are the largest and slowest responses
+}
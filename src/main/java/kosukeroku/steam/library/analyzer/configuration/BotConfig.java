@@ -1,21 +1,51 @@
 package kosukeroku.steam.library.analyzer.configuration;
 
 import kosukeroku.steam.library.analyzer.telegram.LibraryAnalyzerBot;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+// telegram.bot.mode picks how updates reach the bot: 'polling' (default, one polling loop per process),
+// 'webhook' (telegram posts updates to WebhookController, so several replicas can sit behind a load balancer)
+// or 'none' (nothing is received, e.g. for load tests that drive the services directly)
+@Slf4j
 @Configuration
 public class BotConfig {
 
     @Bean
+    @ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "polling", matchIfMissing = true)
     public TelegramBotsApi telegramBotsApi(LibraryAnalyzerBot bot) throws TelegramApiException {
         TelegramBotsApi api = new TelegramBotsApi(DefaultBotSession.class);
-        api.registerBot(bot);
+        api.registerBot(bot); // also removes a webhook left from webhook mode
         return api;
     }
 
-}
\ No newline at end of file
+    // points telegram at our webhook endpoint on startup; every replica sets the same url, so this is idempotent
+    @Bean
+    @ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "webhook")
+    public ApplicationRunner telegramWebhookRegistration(
+            LibraryAnalyzerBot bot,
+            @Value("${telegram.bot.webhook.url}") String webhookUrl,
+            @Value("${telegram.bot.webhook.path:/telegram/webhook}") String webhookPath,
+            @Value("${telegram.bot.webhook.secret-token:}") String secretToken,
+            @Value("${telegram.bot.webhook.max-connections:40}") Integer maxConnections) {
+        return args -> {
+            SetWebhook.SetWebhookBuilder setWebhook = SetWebhook.builder()
+                    .url(webhookUrl + webhookPath)
+                    .maxConnections(maxConnections);
+            if (!secretToken.isEmpty()) {
+                setWebhook.secretToken(secretToken);
+            }
+
+            bot.execute(setWebhook.build());
+            log.info("Registered Telegram webhook at {}{}", webhookUrl, webhookPath);
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package kosukeroku.steam.library.analyzer.configuration;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+// http client of the steam api: a dedicated connection pool sized for friend fan-outs, kept-alive connections
+// reused most-recently-used first (so idle ones actually expire instead of being rotated), gzip responses,
+// cached dns lookups and timeouts on connecting, acquiring a connection and waiting for a response
+// (SteamApiClient narrows the response timeout per endpoint). pool metrics are published to micrometer's
+// global registry, which spring boot's registry is part of, as reactor.netty.connection.provider.* tagged steam
+@Configuration
+public class SteamHttpClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider steamConnectionProvider(
+            @Value("${app.steam.http.max-connections:200}") Integer maxConnections,
+            @Value("${app.steam.http.pending-acquire-max-count:1000}") Integer pendingAcquireMaxCount,
+            @Value("${app.steam.http.pending-acquire-timeout-ms:10000}") Long pendingAcquireTimeoutMs,
+            @Value("${app.steam.http.max-idle-time-seconds:30}") Long maxIdleTimeSeconds,
+            @Value("${app.steam.http.max-life-time-minutes:5}") Long maxLifeTimeMinutes,
+            @Value("${app.steam.http.evict-interval-seconds:30}") Long evictIntervalSeconds) {
+        return ConnectionProvider.builder("steam")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(maxIdleTimeSeconds))
+                .maxLifeTime(Duration.ofMinutes(maxLifeTimeMinutes))
+                .evictInBackground(Duration.ofSeconds(evictIntervalSeconds))
+                .lifo()
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public HttpClient steamHttpClient(
+            ConnectionProvider steamConnectionProvider,
+            @Value("${app.steam.http.connect-timeout-ms:3000}") Integer connectTimeoutMs,
+            @Value("${app.steam.http.response-timeout-ms:10000}") Long responseTimeoutMs,
+            @Value("${app.steam.http.dns-cache-max-ttl-seconds:300}") Long dnsCacheMaxTtlSeconds) {
+        return HttpClient.create(steamConnectionProvider)
+                .compress(true) // Accept-Encoding: gzip, responses are decompressed transparently
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .resolver(spec -> spec
+                        .cacheMaxTimeToLive(Duration.ofSeconds(dnsCacheMaxTtlSeconds))
+                        .cacheNegativeTimeToLive(Duration.ofSeconds(5)));
+    }
+}
@@ -0,0 +1,33 @@
+package kosukeroku.steam.library.analyzer.controller;
+
+import kosukeroku.steam.library.analyzer.client.AdaptiveConcurrencyLimiter;
+import kosukeroku.steam.library.analyzer.client.RetryBudget;
+import kosukeroku.steam.library.analyzer.client.SingleFlight;
+import kosukeroku.steam.library.analyzer.client.SteamApiClient;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// read-only runtime state of the steam client, for checking how it behaves under load. it is an actuator endpoint
+// (/actuator/steamclient), so it is only served when exposed and on the management port when one is configured,
+// not next to the public webhook
+@Component
+@Endpoint(id = "steamclient")
+@RequiredArgsConstructor
+public class SteamClientEndpoint {
+
+    // utility record for exposing the client's state
+    public record State(List<AdaptiveConcurrencyLimiter.State> limiters, SingleFlight.Stats singleFlight,
+                        RetryBudget.State retryBudget) {}
+
+    private final SteamApiClient steamApiClient;
+
+    @ReadOperation
+    public State steamClient() {
+        return new State(steamApiClient.getLimiterStates(), steamApiClient.getSingleFlightStats(),
+                steamApiClient.getRetryBudgetState());
+    }
+}
@@ -0,0 +1,7 @@
+package kosukeroku.steam.library.analyzer.exception;
+
+public class SteamCallLimitException extends RuntimeException {
+    public SteamCallLimitException() {
+        super("Steam call limit of this task is used up");
+    }
+}
@@ -0,0 +1,8 @@
+package kosukeroku.steam.library.analyzer.modelDTO;
+
+import java.util.Map;
+
+// schemas cached before the game name was dropped still carry it, unknown fields are ignored when they are read
+public record AchievementSchema(
+        Map<String, String> achievementNames // apiname -> display name in the configured language
+) {}
@@ -0,0 +1,7 @@
+package kosukeroku.steam.library.analyzer.modelDTO;
+
+public record AchievementTotal(
+        int completedAchievements,
+        boolean hidden, // private library or achievements, such users are left out of leaderboards
+        long updatedAt // when the total was computed, epoch millis
+) {}
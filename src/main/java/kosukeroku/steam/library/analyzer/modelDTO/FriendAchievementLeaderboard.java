@@ -4,6 +4,8 @@ public record FriendAchievementLeaderboard(
     String friendName,
     String steamId,
     int totalAchievements,
-    boolean isCurrentUser
+    boolean isCurrentUser,
+    Long updatedAt, // when the total was computed (epoch millis), null if it could not be computed
+    boolean pending // the total is not computed yet, the leaderboard warmer will compute it
 ) {}
 
@@ -0,0 +1,14 @@
+package kosukeroku.steam.library.analyzer.modelDTO;
+
+import kosukeroku.steam.library.analyzer.service.SteamService;
+
+import java.util.List;
+
+public record GameAchievementSnapshot(
+        Long appId,
+        String gameName,
+        int playtime, // playtime_forever at the moment of the snapshot, achievements can only change when it grows
+        int completedAchievements,
+        int totalAchievements,
+        List<SteamService.RecentAchievement> recentAchievements // most recent unlocks in this game
+) {}
@@ -0,0 +1,17 @@
+package kosukeroku.steam.library.analyzer.responseDTO;
+
+import java.util.List;
+
+// the part of a GetPlayerAchievements response the bot uses: counts and the few most recent unlocks,
+// the full achievement list is dropped while the response is being parsed
+public record PlayerAchievements(
+        boolean success,
+        int totalAchievements,
+        int completedAchievements,
+        List<UnlockedAchievement> recentUnlocks // most recent first
+) {
+    // a game without stats
+    public static final PlayerAchievements NONE = new PlayerAchievements(false, 0, 0, List.of());
+
+    public record UnlockedAchievement(String apiName, String name, long unlockTime) {}
+}
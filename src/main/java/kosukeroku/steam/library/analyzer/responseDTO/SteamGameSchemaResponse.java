@@ -0,0 +1,22 @@
+package kosukeroku.steam.library.analyzer.responseDTO;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record SteamGameSchemaResponse(
+        @JsonProperty("game") Game game
+) {
+    public record Game(
+            @JsonProperty("availableGameStats") AvailableGameStats availableGameStats // absent for games without stats
+    ) {}
+
+    public record AvailableGameStats(
+            @JsonProperty("achievements") List<Achievement> achievements
+    ) {}
+
+    public record Achievement(
+            @JsonProperty("name") String apiName, // the same as apiname in player achievements
+            @JsonProperty("displayName") String displayName
+    ) {}
+}
@@ -1,16 +1,26 @@
 package kosukeroku.steam.library.analyzer.service;
 
+import kosukeroku.steam.library.analyzer.client.SteamApiClient;
 import kosukeroku.steam.library.analyzer.modelDTO.*;
 import kosukeroku.steam.library.analyzer.exception.SteamApiException;
 import kosukeroku.steam.library.analyzer.exception.SteamPrivateProfileException;
 import kosukeroku.steam.library.analyzer.exception.SteamUserNotFoundException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+// the bot edge: steam service is non-blocking, and this is the only place where its results are waited for
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -18,7 +28,10 @@ public class BotService {
 
     private final SteamService steamService;
     private final SessionService sessionService;
+    private final PrefetchService prefetchService;
+    private final MeterRegistry meterRegistry;
     private final static String NEXT_ACTION_MESSAGE = "What would you like to know next?";
+    private final static String LOADING_MORE_MESSAGE = "⏳ _Loading the rest..._";
     private final static String NEW_PROFILE_HINT = "🔄 _To analyze a different profile, simply send another SteamID or custom URL_";
     private static final String WELCOME_MESSAGE = """
 👋 *Hi! I am Steam Library Analyzer Bot!*
@@ -58,14 +71,25 @@ I'll show you:
     // processes an input that expects steamID (which is any text input besides '/start' at this moment)
     private String processInitialSteamInput(String input, Long chatId) {
         try {
-            String resolvedSteamId = steamService.resolveSteamId(input);
-            List<SteamGame> games = steamService.getGames(resolvedSteamId);
-            GameStats stats = steamService.getOverallStats(games);
+            SteamFetchContext context = new SteamFetchContext();
+            String resolvedSteamId = steamService.resolveSteamId(input).block();
+
+            // library and nickname are fetched concurrently
+            String statsMessage = Mono.zip(
+                            steamService.getLibrary(resolvedSteamId, context),
+                            steamService.getPlayerName(resolvedSteamId, context))
+                    .map(tuple -> {
+                        GameStats stats = steamService.getOverallStats(tuple.getT1());
+                        return steamService.formatStatsMessage(stats, resolvedSteamId, tuple.getT2());
+                    })
+                    .block();
 
             // creating a redis session and storing steamID there
             sessionService.createSession(chatId, resolvedSteamId);
 
-            String statsMessage = steamService.formatStatsMessage(stats, resolvedSteamId);
+            // warming the heavy views while the user reads the stats
+            prefetchService.start(chatId, resolvedSteamId, context);
+
             return statsMessage + "\n\n**What would you like to know?**\n\n" + NEW_PROFILE_HINT;
 
         } catch (SteamUserNotFoundException e) {
@@ -78,8 +102,9 @@ I'll show you:
         }
     }
 
-    // processes button responses (top games info, achievements info, friends stats)
-    public String handleButtonResponse(String buttonData, Long chatId) {
+    // processes button responses (top games info, achievements info, friends stats);
+    // views built from several sections report partial messages to onProgress as sections finish
+    public String handleButtonResponse(String buttonData, Long chatId, Consumer<String> onProgress) {
 
         // getting steamID from a redis session
         Optional<String> steamIdOpt = sessionService.getSteamId(chatId);
@@ -89,34 +114,54 @@ I'll show you:
         }
 
         String steamId = steamIdOpt.get();
-        String nickname = steamService.getPlayerName(steamId);
+
+        // the prefetched context of the chat if there is one, otherwise one fetch context per click,
+        // so sections that need the same steam data share the calls
+        SteamFetchContext context = prefetchService.getContext(chatId, steamId).orElseGet(SteamFetchContext::new);
+        int savedBefore = context.getSavedCalls();
+
+        // requests are counted in the click's own subscription, the prefetch may still be sending its own into the context
+        AtomicInteger clickCalls = new AtomicInteger();
+        Context clickContext = Context.of(SteamApiClient.CALLER_SENT_CALLS_CONTEXT_KEY, clickCalls);
 
         try {
             String result;
             switch (buttonData) {
                 case "top_games":
-                    List<SteamGame> games = steamService.getGames(steamId);
-                    List<SteamGame> topGames = steamService.getTopGamesByPlaytime(games);
+                    List<SteamGame> topGames = steamService.getTopGamesByPlaytime(steamId, context).contextWrite(clickContext).block();
                     result = steamService.formatTopGamesMessage(topGames, "all_time");
                     break;
 
                 case "recent_games":
-                    List<SteamGame> recentGames = steamService.getRecentGames(steamId);
+                    List<SteamGame> recentGames = steamService.getRecentGames(steamId, context).contextWrite(clickContext).block();
                     List<SteamGame> topRecentGames = steamService.getTopRecentGamesByPlaytime(recentGames);
                     result = steamService.formatTopGamesMessage(topRecentGames, "recent");
                     break;
 
                 case "achievements":
-                    AchievementStats achievementStats = steamService.getAchievementStats(steamId);
+                    AchievementStats achievementStats = steamService.getAchievementStats(steamId, context).contextWrite(clickContext).block();
                     result = steamService.formatAchievementMessage(achievementStats);
                     break;
 
                 case "friends":
-                    List<FriendGameStats> friendGames = steamService.getPopularGamesAmongFriends(steamId);
-                    List<FriendGameOverlap> friendOverlap = steamService.getTopGameOverlaps(steamId);
-                    List<FriendAchievementLeaderboard> leaderboard = steamService.getAchievementLeaderboard(steamId);
-                    AchievementStats achievementStatsForFriends = steamService.getAchievementStats(steamId);
-                    result = steamService.formatFriendGamesMessage(friendGames, friendOverlap, leaderboard, achievementStatsForFriends, nickname);
+                    // all sections run concurrently and share the fetch context; every finished section is
+                    // shown right away, the message is rendered from whatever sections are done so far
+                    FriendsView view = new FriendsView();
+                    Flux.<Object>merge(
+                                    steamService.getPopularGamesAmongFriends(steamId, context).doOnNext(value -> view.friendGames = value),
+                                    steamService.getTopGameOverlaps(steamId, context).doOnNext(value -> view.overlaps = value),
+                                    steamService.getAchievementLeaderboard(steamId, context).doOnNext(value -> view.leaderboard = value),
+                                    steamService.getAchievementStats(steamId, context).doOnNext(value -> view.userAchievementStats = value),
+                                    steamService.getPlayerName(steamId, context).doOnNext(value -> view.nickname = value))
+                            .publishOn(Schedulers.boundedElastic()) // progress updates are sent to telegram, which is blocking
+                            .doOnNext(section -> {
+                                if (!view.isComplete()) {
+                                    onProgress.accept(view.render(steamService) + "\n\n" + LOADING_MORE_MESSAGE);
+                                }
+                            })
+                            .contextWrite(clickContext)
+                            .blockLast();
+                    result = view.render(steamService);
                     break;
 
 
@@ -124,6 +169,17 @@ I'll show you:
                     return "❌ Unknown command.";
             }
 
+            int sentCalls = clickCalls.get();
+            log.info("Button {} for chat {}: {} Steam API requests sent, {} saved by fetch context",
+                    buttonData, chatId, sentCalls, context.getSavedCalls() - savedBefore);
+
+            DistributionSummary.builder("bot.button.steam.calls")
+                    .description("Steam API requests sent for one button click")
+                    .tag("button", buttonData) // unknown buttons returned earlier, so tag values are bounded
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(sentCalls);
+
             return result + "\n\n" + NEXT_ACTION_MESSAGE +"\n\n" + NEW_PROFILE_HINT;
 
         } catch (SteamPrivateProfileException e) {
@@ -133,4 +189,21 @@ I'll show you:
             return "❌ Error processing request. Please try again.";
         }
     }
-}
\ No newline at end of file
+
+    // sections of the friends view, null while the section is still loading
+    private static final class FriendsView {
+        private volatile List<FriendGameStats> friendGames;
+        private volatile List<FriendGameOverlap> overlaps;
+        private volatile List<FriendAchievementLeaderboard> leaderboard;
+        private volatile AchievementStats userAchievementStats;
+        private volatile String nickname;
+
+        boolean isComplete() {
+            return friendGames != null && overlaps != null && leaderboard != null && userAchievementStats != null && nickname != null;
+        }
+
+        String render(SteamService steamService) {
+            return steamService.formatFriendGamesMessage(friendGames, overlaps, leaderboard, userAchievementStats, nickname);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package kosukeroku.steam.library.analyzer.service;
+
+import kosukeroku.steam.library.analyzer.cache.AchievementTotalsStore;
+import kosukeroku.steam.library.analyzer.entity.UserSession;
+import kosukeroku.steam.library.analyzer.modelDTO.AchievementTotal;
+import kosukeroku.steam.library.analyzer.repository.UserSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+// keeps completed-achievement totals of friends of users with active sessions fresh in the background,
+// so the leaderboard only reads them. every run sends at most the configured budget of steam requests: the run's
+// fetch context refuses requests beyond it, and a friend whose refresh can't fit into what is left is skipped.
+// only the stalest totals are refreshed, a few friends at a time, and friends shared by several users once.
+// replicas share the totals in redis, so only the replica holding the run lock warms them in an interval
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LeaderboardWarmer {
+
+    private static final String RUN_LOCK_KEY = "steam:leaderboard_warmer:lock";
+
+    private final UserSessionRepository sessionRepository;
+    private final SteamService steamService;
+    private final AchievementTotalsStore achievementTotalsStore;
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${app.leaderboard.warm-call-budget:500}")
+    private Integer callBudget;
+
+    // totals younger than this are not refreshed
+    @Value("${app.leaderboard.stale-minutes:60}")
+    private Long staleMinutes;
+
+    // friends whose totals are refreshed at once
+    @Value("${app.leaderboard.warm-concurrency:4}")
+    private Integer warmConcurrency;
+
+    @Value("${app.leaderboard.warm-interval-ms:600000}")
+    private Long warmIntervalMs;
+
+    @Scheduled(initialDelayString = "${app.leaderboard.warm-initial-delay-ms:60000}",
+            fixedDelayString = "${app.leaderboard.warm-interval-ms:600000}")
+    public void warmLeaderboards() {
+        if (!acquireRunLock()) {
+            log.debug("Leaderboards are being warmed by another replica");
+            return;
+        }
+
+        // expired sessions can still be listed in the repository index and come back as null
+        List<String> activeUsers = StreamSupport.stream(sessionRepository.findAll().spliterator(), false)
+                .filter(Objects::nonNull)
+                .map(UserSession::getSteamId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+
+        if (activeUsers.isEmpty()) return;
+
+        SteamFetchContext context = new SteamFetchContext(callBudget);
+        long staleBefore = System.currentTimeMillis() - Duration.ofMinutes(staleMinutes).toMillis();
+        Set<String> visited = ConcurrentHashMap.newKeySet();
+        AtomicInteger refreshed = new AtomicInteger();
+
+        Flux.fromIterable(activeUsers)
+                .concatMap(steamId -> staleFriends(steamId, staleBefore, visited, context))
+                .takeWhile(friendId -> context.getRemainingCalls() > 0)
+                .flatMap(friendId -> steamService.refreshAchievementTotal(friendId, false, context)
+                        .doOnNext(total -> refreshed.incrementAndGet())
+                        .onErrorResume(e -> {
+                            log.debug("Could not refresh achievement total for {}: {}", friendId, e.getMessage());
+                            return Mono.empty();
+                        }), warmConcurrency)
+                .then()
+                .block();
+
+        log.info("Leaderboard warmer refreshed {} totals for {} active users using {} calls",
+                refreshed.get(), activeUsers.size(), context.getSentCalls());
+    }
+
+    // the lock isn't released after the run, it expires with the interval, so the replicas' schedules
+    // can't line up into several runs per interval
+    private boolean acquireRunLock() {
+        try {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(RUN_LOCK_KEY,
+                    String.valueOf(System.currentTimeMillis()), Duration.ofMillis(warmIntervalMs));
+            return Boolean.TRUE.equals(acquired);
+        } catch (Exception e) {
+            log.warn("Could not take the leaderboard warmer lock: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    // friends of a user whose totals are missing or older than staleBefore and weren't picked for another user
+    private Flux<String> staleFriends(String steamId, long staleBefore, Set<String> visited, SteamFetchContext context) {
+        return steamService.getFriendSteamIds(steamId, context)
+                .onErrorResume(e -> {
+                    log.debug("Could not fetch friends of {}: {}", steamId, e.getMessage());
+                    return Mono.empty();
+                })
+                .flatMapMany(friendIds -> Mono.fromCallable(() -> achievementTotalsStore.getAll(friendIds))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMapMany(totals -> Flux.fromIterable(friendIds)
+                                .filter(friendId -> {
+                                    AchievementTotal total = totals.get(friendId);
+                                    return (total == null || total.updatedAt() <= staleBefore) && visited.add(friendId);
+                                })));
+    }
+}
@@ -0,0 +1,88 @@
+package kosukeroku.steam.library.analyzer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// right after a steamID is accepted the user almost always presses a menu button, so the heavy views are
+// warmed in the background into the fetch context of the chat. button clicks reuse that context and pick up
+// finished or still running calls instead of starting them again. a new steamID in the chat cancels the old prefetch.
+// only successful calls are kept in a prefetch context, failed ones are made again by the click that needs them
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PrefetchService {
+
+    private record Prefetch(String steamId, SteamFetchContext context, Disposable task, long expiresAt) {}
+
+    private final SteamService steamService;
+    private final Map<Long, Prefetch> prefetches = new ConcurrentHashMap<>();
+
+    @Value("${app.prefetch.enabled:true}")
+    private Boolean enabled;
+
+    // steam calls one prefetch may perform, on top of the calls already made for the initial stats
+    @Value("${app.prefetch.call-budget:300}")
+    private Integer callBudget;
+
+    // prefetched data is reused by clicks for this long
+    @Value("${app.prefetch.ttl-minutes:10}")
+    private Long ttlMinutes;
+
+    // context is the one the initial stats were built with, so the user's library is already in it
+    public void start(Long chatId, String steamId, SteamFetchContext context) {
+        if (!enabled) return;
+
+        purgeExpired();
+        context.keepSuccessesOnly();
+
+        int budget = context.getSentCalls() + callBudget;
+        Disposable task = steamService.prefetchHeavyViews(steamId, context, budget)
+                .subscribe(null,
+                        e -> log.debug("Prefetch for chat {} failed: {}", chatId, e.getMessage()),
+                        () -> log.debug("Prefetch for chat {} done with {} calls", chatId, context.getSentCalls()));
+
+        long expiresAt = System.currentTimeMillis() + Duration.ofMinutes(ttlMinutes).toMillis();
+        Prefetch previous = prefetches.put(chatId, new Prefetch(steamId, context, task, expiresAt));
+
+        // the session was replaced, so the old profile's data is not needed anymore
+        if (previous != null) {
+            previous.task().dispose();
+        }
+    }
+
+    // context with prefetched data for this chat and steamID, if there is a fresh one
+    public Optional<SteamFetchContext> getContext(Long chatId, String steamId) {
+        purgeExpired();
+
+        Prefetch prefetch = prefetches.get(chatId);
+        if (prefetch == null) return Optional.empty();
+
+        if (!prefetch.steamId().equals(steamId) || prefetch.expiresAt() <= System.currentTimeMillis()) {
+            if (prefetches.remove(chatId, prefetch)) {
+                prefetch.task().dispose();
+            }
+            return Optional.empty();
+        }
+        return Optional.of(prefetch.context());
+    }
+
+    // expired contexts hold whole friend libraries, so they are dropped on a timer too, not only when the bot is used
+    @Scheduled(fixedDelayString = "${app.prefetch.purge-interval-ms:60000}")
+    void purgeExpired() {
+        long now = System.currentTimeMillis();
+        prefetches.forEach((chatId, prefetch) -> {
+            if (prefetch.expiresAt() <= now && prefetches.remove(chatId, prefetch)) {
+                prefetch.task().dispose();
+            }
+        });
+    }
+}
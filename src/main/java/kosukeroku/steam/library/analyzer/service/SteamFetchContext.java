@@ -0,0 +1,90 @@
+package kosukeroku.steam.library.analyzer.service;
+
+import kosukeroku.steam.library.analyzer.client.SteamApiClient;
+import kosukeroku.steam.library.analyzer.client.SteamEndpoint;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// memoizes steam api calls for the duration of one user interaction (a message or a button click),
+// so every (endpoint, steamId, appId) combination is fetched at most once no matter how many sections need it.
+// requests actually sent to steam on behalf of the context are counted by the api client, so data found in redis
+// and calls joined while another chat's identical call was in flight are not counted as steam calls
+public class SteamFetchContext {
+
+    private record FetchKey(SteamEndpoint endpoint, String steamId, String appId) {}
+
+    private final Map<FetchKey, Mono<?>> fetches = new ConcurrentHashMap<>();
+    private final Set<FetchKey> failedFetches = ConcurrentHashMap.newKeySet();
+    private volatile boolean memoizeFailures = true;
+    private final AtomicInteger requestedCalls = new AtomicInteger();
+    private final AtomicInteger loadedFetches = new AtomicInteger();
+    private final AtomicInteger sentCalls = new AtomicInteger();
+    private final AtomicInteger remainingCalls; // null if the context has no call limit
+
+    public SteamFetchContext() {
+        this.remainingCalls = null;
+    }
+
+    // for background work with a fixed budget: requests beyond the limit are refused before they are sent,
+    // and their fetches fail with SteamCallLimitException
+    public SteamFetchContext(int callLimit) {
+        this.remainingCalls = new AtomicInteger(callLimit);
+    }
+
+    // returns the shared result of the first call for this key; cache() makes concurrent and later subscribers
+    // (including failed ones, so a broken call is not retried within the same interaction) reuse a single request
+    @SuppressWarnings("unchecked")
+    <T> Mono<T> fetch(SteamEndpoint endpoint, String steamId, String appId, Supplier<Mono<T>> loader) {
+        requestedCalls.incrementAndGet();
+        return (Mono<T>) fetches.computeIfAbsent(new FetchKey(endpoint, steamId, appId), key -> {
+            loadedFetches.incrementAndGet();
+            Mono<?>[] cached = new Mono<?>[1];
+            cached[0] = loader.get()
+                    .contextWrite(ctx -> remainingCalls != null
+                            ? ctx.put(SteamApiClient.SENT_CALLS_CONTEXT_KEY, sentCalls).put(SteamApiClient.CALL_LIMIT_CONTEXT_KEY, remainingCalls)
+                            : ctx.put(SteamApiClient.SENT_CALLS_CONTEXT_KEY, sentCalls))
+                    .doOnError(e -> {
+                        if (memoizeFailures) {
+                            failedFetches.add(key);
+                        } else {
+                            fetches.remove(key, cached[0]);
+                        }
+                    })
+                    .cache();
+            return cached[0];
+        });
+    }
+
+    // for a context that outlives one interaction (e.g. a prefetch reused by later clicks): failures seen so far
+    // are forgotten and new ones are not memoized, so a transient failure is not replayed to every later click
+    void keepSuccessesOnly() {
+        memoizeFailures = false;
+        failedFetches.forEach(fetches::remove);
+        failedFetches.clear();
+    }
+
+    // seeds the context with data obtained elsewhere (e.g. a bulk cache lookup), keeps the existing entry if there is one
+    <T> void prime(SteamEndpoint endpoint, String steamId, String appId, T value) {
+        fetches.putIfAbsent(new FetchKey(endpoint, steamId, appId), Mono.just(value));
+    }
+
+    // requests sent to steam, including retries and hedged copies
+    public int getSentCalls() {
+        return sentCalls.get();
+    }
+
+    // requests that may still be sent, Integer.MAX_VALUE without a limit
+    public int getRemainingCalls() {
+        return remainingCalls != null ? Math.max(0, remainingCalls.get()) : Integer.MAX_VALUE;
+    }
+
+    // how many api calls were answered from this context instead of being loaded again
+    public int getSavedCalls() {
+        return requestedCalls.get() - loadedFetches.get();
+    }
+}
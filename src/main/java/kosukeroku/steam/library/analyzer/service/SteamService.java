@@ -1,24 +1,54 @@
 package kosukeroku.steam.library.analyzer.service;
 
 
+import kosukeroku.steam.library.analyzer.cache.AchievementSchemaCache;
+import kosukeroku.steam.library.analyzer.cache.AchievementSnapshotStore;
+import kosukeroku.steam.library.analyzer.cache.AchievementTotalsStore;
+import kosukeroku.steam.library.analyzer.cache.AppNameCatalog;
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import kosukeroku.steam.library.analyzer.cache.OwnedGamesCache;
+import kosukeroku.steam.library.analyzer.cache.PlayerNameCache;
+import kosukeroku.steam.library.analyzer.cache.ProfileVisibilityCache;
+import kosukeroku.steam.library.analyzer.client.SteamApiClient;
+import kosukeroku.steam.library.analyzer.client.SteamEndpoint;
 import kosukeroku.steam.library.analyzer.modelDTO.*;
 import kosukeroku.steam.library.analyzer.responseDTO.*;
 import kosukeroku.steam.library.analyzer.exception.SteamApiException;
+import kosukeroku.steam.library.analyzer.exception.SteamCallLimitException;
 import kosukeroku.steam.library.analyzer.exception.SteamPrivateProfileException;
 import kosukeroku.steam.library.analyzer.exception.SteamUserNotFoundException;
+import kosukeroku.steam.library.analyzer.util.CompactLibrary;
+import kosukeroku.steam.library.analyzer.util.GameOverlapEngine;
+import kosukeroku.steam.library.analyzer.util.GamePopularityAggregator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class SteamService {
 
-    private final WebClient webClient;
+    private final SteamApiClient steamApiClient;
+    private final OwnedGamesCache ownedGamesCache;
+    private final PlayerNameCache playerNameCache;
+    private final ProfileVisibilityCache visibilityCache;
+    private final AchievementSnapshotStore achievementSnapshotStore;
+    private final AchievementTotalsStore achievementTotalsStore;
+    private final GameNameDictionary gameNames;
+    private final AppNameCatalog appNameCatalog;
+    private final AchievementSchemaCache achievementSchemaCache;
+    private final MeterRegistry meterRegistry;
 
     private static final int VANITY_SUCCESS = 1; // returned code if vanity url was successfully found
     private static final int VANITY_NOT_FOUND = 42; // returned code if vanity url was not found
@@ -28,103 +58,251 @@ public class SteamService {
     private static final int FRIENDS_IN_SHARING_OUTPUT = 3;
     private static final int FRIENDS_IN_LEADERBOARD_OUTPUT = 5;
     private static final int MINIMUM_HOURS_FOR_STATS = 10;
+    private static final int MAX_IDS_PER_SUMMARIES_CALL = 100; // steam ignores requests for more players than this
+    private static final AchievementStats HIDDEN_ACHIEVEMENT_STATS =
+            new AchievementStats(0, 0, 0, 0, 0, true, Collections.emptyList(), Collections.emptyList());
 
-    @Value("${steam.api.key:}")
-    private String steamApiKey;
+    // how many friends are processed at once in friends sections, so one huge friend list can't take all connections
+    @Value("${app.steam.friends-concurrency:8}")
+    private Integer friendsConcurrency;
 
+    // how many games' achievements of one user are requested at once
+    @Value("${app.steam.achievements-concurrency:8}")
+    private Integer achievementsConcurrency;
+
+    // friends without a precomputed total computed right on the leaderboard click, the rest are left to the warmer
+    @Value("${app.leaderboard.inline-friends:5}")
+    private Integer leaderboardInlineFriends;
+
+    // language of achievement names, steam's language name
+    @Value("${app.steam.language:english}")
+    private String language;
 
 
-    public SteamService(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.baseUrl("https://api.steampowered.com").build();
-    }
 
     // converts vanityURL name to steamID
-    public String resolveSteamId(String input) {
+    public Mono<String> resolveSteamId(String input) {
         log.info("Resolving SteamID for: {}", input);
 
         // if input is 17 digits, it is steamID
         if (input.matches("^\\d{17}$")) {
             log.info("Input is already SteamID64: {}", input);
-            return input;
+            return Mono.just(input);
         }
 
         // otherwise we consider it a vanity url
         log.info("Treating input as vanity URL: {}", input);
 
-        try {
-            SteamVanityResponse response = webClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/ISteamUser/ResolveVanityURL/v0001/")
-                            .queryParam("key", steamApiKey)
-                            .queryParam("vanityurl", input)
-                            .build())
-                    .retrieve()
-                    .bodyToMono(SteamVanityResponse.class)
-                    .block();
-
-            // processing api response
-            if (response != null && response.response() != null && response.response().success() == VANITY_SUCCESS) {
-                String steamId = response.response().steamId();
-                log.info("Successfully resolved '{}' to SteamID: {}", input, steamId);
-                return steamId;
-            } else {
-                log.warn("Vanity URL not found: {}", input);
-                throw new SteamUserNotFoundException(input);
-            }
+        return steamApiClient.resolveVanityUrl(input)
+                .onErrorMap(e -> {
+                    log.error("Error resolving vanity URL: {}", input, e);
+                    return new SteamApiException("Error processing profile name.");
+                })
+                // processing api response
+                .flatMap(response -> {
+                    if (response.response() != null && response.response().success() == VANITY_SUCCESS) {
+                        String steamId = response.response().steamId();
+                        log.info("Successfully resolved '{}' to SteamID: {}", input, steamId);
+                        return Mono.just(steamId);
+                    }
+                    log.warn("Vanity URL not found: {}", input);
+                    return Mono.<String>error(new SteamUserNotFoundException(input));
+                })
+                .switchIfEmpty(Mono.error(() -> new SteamUserNotFoundException(input)));
+    }
 
-        } catch (SteamUserNotFoundException e) {
-            throw e; // throwing known exception
-        } catch (Exception e) {
-            log.error("Error resolving vanity URL: {}", input, e);
-            throw new SteamApiException("Error processing profile name.");
-        }
+    /// //////////////////////////////////////////////
+    // MEMOIZED STEAM API CALLS
+    /// //////////////////////////////////////////////
+    // every api call goes through the fetch context of the current interaction, so sections that need
+    // the same data (e.g. friend list or user's library on the friends view) share a single request
+
+    private Mono<SteamPlayerSummariesResponse> fetchPlayerSummaries(String steamIds, SteamFetchContext context) {
+        return context.fetch(SteamEndpoint.GET_PLAYER_SUMMARIES, steamIds, null,
+                () -> steamApiClient.getPlayerSummaries(steamIds));
+    }
+
+    // libraries are additionally cached in redis, so they are shared between interactions and chats;
+    // the context keeps them compacted, since friends views hold hundreds of libraries at once.
+    // a library fetched without appinfo has no names, they are resolved for the shown games only,
+    // so it is kept apart from the one with names, both in the context and in redis
+    private Mono<CompactLibrary> fetchOwnedGames(String steamId, boolean includeAppInfo, SteamFetchContext context) {
+        return context.fetch(SteamEndpoint.GET_OWNED_GAMES, steamId, libraryVariant(includeAppInfo),
+                () -> ownedGamesCache.getOrLoad(steamId, includeAppInfo, steamApiClient.getOwnedGames(steamId, includeAppInfo)));
+    }
+
+    // loads all cached libraries of a friend list with one redis round trip instead of one lookup per friend;
+    // a library with names serves both the friend and the own lookups
+    private Mono<Void> primeOwnedGames(List<String> steamIds, SteamFetchContext context) {
+        return Mono.fromRunnable(() -> ownedGamesCache.getAll(steamIds).forEach((steamId, cached) -> {
+                    context.prime(SteamEndpoint.GET_OWNED_GAMES, steamId, libraryVariant(false), cached.library());
+                    if (cached.withNames()) {
+                        context.prime(SteamEndpoint.GET_OWNED_GAMES, steamId, libraryVariant(true), cached.library());
+                    }
+                }))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    // libraries have no appId, so its place in the context key tells the two kinds of library apart
+    private static String libraryVariant(boolean includeAppInfo) {
+        return includeAppInfo ? "appinfo" : null;
+    }
+
+    private Mono<PlayerAchievements> fetchPlayerAchievements(String steamId, String appId, SteamFetchContext context) {
+        return context.fetch(SteamEndpoint.GET_PLAYER_ACHIEVEMENTS, steamId, appId,
+                () -> steamApiClient.getPlayerAchievements(steamId, appId, ACHIEVEMENTS_IN_OUTPUT));
+    }
+
+    private Mono<SteamFriendsResponse> fetchFriendList(String steamId, SteamFetchContext context) {
+        return context.fetch(SteamEndpoint.GET_FRIEND_LIST, steamId, null,
+                () -> steamApiClient.getFriendList(steamId));
+    }
+
+    // schemas are the same for all users, so they are additionally cached in redis for a long time
+    private Mono<AchievementSchema> fetchGameSchema(String appId, SteamFetchContext context) {
+        return context.fetch(SteamEndpoint.GET_SCHEMA_FOR_GAME, null, appId,
+                () -> achievementSchemaCache.getOrLoad(appId, language,
+                        steamApiClient.getSchemaForGame(appId, language).map(SteamService::toSchema)));
     }
 
-    public String getPlayerName(String steamId) {
-        try {
-            SteamPlayerSummariesResponse response = webClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/ISteamUser/GetPlayerSummaries/v2/")
-                            .queryParam("key", steamApiKey)
-                            .queryParam("steamids", steamId)
-                            .build())
-                    .retrieve()
-                    .bodyToMono(SteamPlayerSummariesResponse.class)
-                    .block();
-
-            if (response != null &&
-                    response.response() != null &&
-                    response.response().players() != null &&
-                    !response.response().players().isEmpty()) {
-
-                return escapeMarkdown(response.response().players().get(0).personaName());
+    private static AchievementSchema toSchema(SteamGameSchemaResponse response) {
+        SteamGameSchemaResponse.Game game = response.game();
+        if (game == null) return new AchievementSchema(Collections.emptyMap());
+
+        Map<String, String> achievementNames = new HashMap<>();
+        if (game.availableGameStats() != null && game.availableGameStats().achievements() != null) {
+            for (SteamGameSchemaResponse.Achievement achievement : game.availableGameStats().achievements()) {
+                if (achievement.apiName() != null && achievement.displayName() != null) {
+                    achievementNames.put(achievement.apiName(), achievement.displayName());
+                }
             }
-        } catch (Exception e) {
-            log.debug("Could not fetch name for user {}: {}", steamId, e.getMessage());
         }
-        return "Unknown user";
+        return new AchievementSchema(achievementNames);
     }
 
-    public List<SteamGame> getGames(String steamId) {
-        SteamOwnedGamesResponse response = getGamesResponse(steamId);
-        return response.response().games();
+    // names of the given games are looked up in the dictionary, then in the shared catalog; afterwards they can be
+    // read from the dictionary. games unknown to both stay unnamed and are left out of the views
+    private Mono<Void> resolveGameNames(Collection<Integer> appIds) {
+        List<Integer> unknown = appIds.stream()
+                .filter(appId -> gameNames.get(appId) == null)
+                .distinct()
+                .toList();
+        if (unknown.isEmpty()) return Mono.empty();
+
+        return Mono.fromCallable(() -> appNameCatalog.load(unknown))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(unnamed -> {
+                    if (!unnamed.isEmpty()) log.debug("No names known for {} of {} games", unnamed.size(), unknown.size());
+                })
+                .then();
+    }
+
+    private static List<Integer> appIdsOf(CompactLibrary library, int[] indices) {
+        List<Integer> appIds = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            appIds.add(library.appId(index));
+        }
+        return appIds;
+    }
+
+    public Mono<String> getPlayerName(String steamId, SteamFetchContext context) {
+        return getPlayerNames(List.of(steamId), context)
+                .map(names -> names.containsKey(steamId) ? escapeMarkdown(names.get(steamId)) : "Unknown user");
+    }
+
+    // returns a map 'steamID -> nickname'; names are taken from the cache first and only the missing ones are requested,
+    // in batches of up to 100 ids that are fetched concurrently
+    private Mono<Map<String, String>> getPlayerNames(List<String> steamIds, SteamFetchContext context) {
+        if (steamIds.isEmpty()) return Mono.just(Collections.emptyMap());
+
+        return Mono.<Map<String, String>>fromCallable(() -> new HashMap<>(playerNameCache.getAll(steamIds)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(names -> {
+                    List<String> missingIds = steamIds.stream()
+                            .filter(steamId -> !names.containsKey(steamId))
+                            .distinct()
+                            .toList();
+
+                    if (missingIds.isEmpty()) return Mono.just(names);
+
+                    List<List<String>> batches = new ArrayList<>();
+                    for (int i = 0; i < missingIds.size(); i += MAX_IDS_PER_SUMMARIES_CALL) {
+                        batches.add(missingIds.subList(i, Math.min(i + MAX_IDS_PER_SUMMARIES_CALL, missingIds.size())));
+                    }
+                    log.info("Fetching names for {} SteamIDs in {} batches", missingIds.size(), batches.size());
+
+                    return Flux.fromIterable(batches)
+                            .flatMap(batch -> fetchPlayerNamesBatch(batch, context), friendsConcurrency)
+                            .reduce(new HashMap<String, String>(), (fetchedNames, batchNames) -> {
+                                fetchedNames.putAll(batchNames);
+                                return fetchedNames;
+                            })
+                            .publishOn(Schedulers.boundedElastic()) // writing to the cache is blocking
+                            .map(fetchedNames -> {
+                                playerNameCache.putAll(fetchedNames);
+                                names.putAll(fetchedNames);
+                                return names;
+                            });
+                });
+    }
+
+    // fetches names of at most 100 players; a failed batch only leaves its own names missing
+    private Mono<Map<String, String>> fetchPlayerNamesBatch(List<String> steamIds, SteamFetchContext context) {
+
+        // merging IDs into a single string for an API request
+        String joinedIds = String.join(",", steamIds);
+
+        return fetchPlayerSummaries(joinedIds, context)
+                .filter(response -> response.response() != null && response.response().players() != null)
+                .map(response -> response.response().players().stream()
+                        .filter(player -> player.personaName() != null)
+                        .collect(Collectors.toMap(
+                                SteamPlayerSummariesResponse.Player::steamId,
+                                SteamPlayerSummariesResponse.Player::personaName,
+                                (first, second) -> first
+                        )))
+                .onErrorResume(e -> {
+                    log.debug("Could not fetch player names: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .defaultIfEmpty(Collections.emptyMap());
+    }
+
+    // user's own library is fetched with appinfo, which also teaches the catalog names of the user's games
+    public Mono<CompactLibrary> getLibrary(String steamId, SteamFetchContext context) {
+        return getLibrary(steamId, true, context);
+    }
+
+    // friends' libraries only need appIds and playtimes, names of the few games shown are resolved separately
+    private Mono<CompactLibrary> getFriendLibrary(String friendId, SteamFetchContext context) {
+        return getLibrary(friendId, false, context);
+    }
+
+    private Mono<CompactLibrary> getLibrary(String steamId, boolean includeAppInfo, SteamFetchContext context) {
+        if (visibilityCache.isHidden(ProfileVisibilityCache.Section.LIBRARY, steamId)) {
+            return Mono.error(new SteamPrivateProfileException(steamId));
+        }
+
+        log.info("Fetching games library for SteamID: {}", steamId);
+
+        return fetchOwnedGames(steamId, includeAppInfo, context)
+                .switchIfEmpty(Mono.error(() -> new SteamApiException("Empty response from Steam API")))
+                .doOnError(SteamPrivateProfileException.class,
+                        e -> visibilityCache.markHidden(ProfileVisibilityCache.Section.LIBRARY, steamId));
     }
 
     /// //////////////////////////////////////////////
     // BASIC OVERALL STATS SECTION
     /// //////////////////////////////////////////////
-    public GameStats getOverallStats(List<SteamGame> games) {
-        log.info("Calculating overall stats {} games", games.size());
+    public GameStats getOverallStats(CompactLibrary library) {
+        log.info("Calculating overall stats {} games", library.size());
 
 
         // calculating stats
-        int totalGames = games.size();
-        int totalPlaytimeMinutes = games.stream()
-                .mapToInt(SteamGame::playtime)
-                .sum();
-        int playedGames = (int) games.stream()
-                .filter(game -> game.playtime() > 0)
-                .count();
+        int totalGames = library.size();
+        int totalPlaytimeMinutes = (int) library.totalPlaytime();
+        int playedGames = library.playedGames();
         int neverPlayedGames = totalGames - playedGames;
 
         double totalPlaytimeHours = totalPlaytimeMinutes / (double) 60;
@@ -135,40 +313,8 @@ public class SteamService {
                 totalPlaytimeHours, averagePlaytimeHours, neverPlayedPercentage);
     }
 
-    private SteamOwnedGamesResponse getGamesResponse(String steamId) {
-        log.info("Fetching games library for SteamID: {}", steamId);
-
-        SteamOwnedGamesResponse response = webClient.get()
-                .uri(uriBuilder -> uriBuilder
-                        .path("/IPlayerService/GetOwnedGames/v0001/")
-                        .queryParam("key", steamApiKey)
-                        .queryParam("steamid", steamId)
-                        .queryParam("include_appinfo", 1)
-                        .queryParam("format", "json")
-                        .build())
-                .retrieve()
-                .bodyToMono(SteamOwnedGamesResponse.class)
-                .block();
-
-        validateGamesResponse(response, steamId);
-        return response;
-    }
-
-    private void validateGamesResponse(SteamOwnedGamesResponse response, String steamId) {
-        if (response == null) {
-            throw new SteamApiException("Empty response from Steam API");
-        }
-        if (response.response() == null) {
-            throw new SteamPrivateProfileException(steamId);
-        }
-        if (response.response().games() == null) {
-            throw new SteamPrivateProfileException(steamId);
-        }
-    }
-
-    public String formatStatsMessage(GameStats stats, String resolvedSteamId) {
+    public String formatStatsMessage(GameStats stats, String resolvedSteamId, String userNickname) {
         StringBuilder message = new StringBuilder();
-        String userNickname = getPlayerName(resolvedSteamId);
 
         message.append("👤 *User:* ").append(userNickname).append(" (SteamID: ").append(resolvedSteamId).append(")\n\n");
 
@@ -192,15 +338,20 @@ public class SteamService {
     /// //////////////////////////////////////////////
     // GAMES BY PLAYTIME SECTION
     /// //////////////////////////////////////////////
-    public List<SteamGame> getTopGamesByPlaytime(List<SteamGame> games) {
-        log.info("Getting top games from {} total games", games.size());
+    // names are resolved for the most played games first, the library may come from the cache without them
+    public Mono<List<SteamGame>> getTopGamesByPlaytime(String steamId, SteamFetchContext context) {
+        return getLibrary(steamId, context).flatMap(library -> {
+            int[] mostPlayed = library.topByPlaytime(GAMES_IN_OUTPUT, index -> library.playtime(index) > 0);
+            return resolveGameNames(appIdsOf(library, mostPlayed))
+                    .then(Mono.fromCallable(() -> getTopGamesByPlaytime(library)));
+        });
+    }
 
-        return games.stream()
-                .filter(game -> game.playtime() > 0 && game.name() != null)
-                .sorted(Comparator.comparing(SteamGame::playtime).reversed())
-                .limit(GAMES_IN_OUTPUT)
-                .collect(Collectors.toList());
+    public List<SteamGame> getTopGamesByPlaytime(CompactLibrary library) {
+        log.info("Getting top games from {} total games", library.size());
 
+        return library.toGames(library.topByPlaytime(GAMES_IN_OUTPUT,
+                index -> library.playtime(index) > 0 && library.name(index) != null));
     }
 
     public String formatTopGamesMessage(List<SteamGame> topGames, String mode) {
@@ -238,96 +389,214 @@ public class SteamService {
     // ACHIEVEMENT SECTION
     /// //////////////////////////////////////////////
     // utility records...
-    public record AchievementData(String gameName, int totalAchievements, int completedAchievements, boolean isPerfect, List<SteamAchievementsResponse.GameAchievement> allAchievements) {}
-
-    public record RecentAchievement(String achievementName, String gameName, Long unlockTime) {}
+    public record AchievementData(Long appId, String gameName, int totalAchievements, int completedAchievements, boolean isPerfect, List<RecentAchievement> recentAchievements) {}
+
+    public record RecentAchievement(Long appId, String achievementName, String gameName, Long unlockTime) {}
+
+    // ...and utility methods for extracting achievement data from games; unlocks of snapshots stored
+    // before they carried the appId get it from their game
+    private AchievementData toAchievementData(GameAchievementSnapshot snapshot) {
+        int total = snapshot.totalAchievements();
+        int completed = snapshot.completedAchievements();
+        List<RecentAchievement> recentAchievements = snapshot.recentAchievements().stream()
+                .map(achievement -> new RecentAchievement(snapshot.appId(), achievement.achievementName(),
+                        achievement.gameName(), achievement.unlockTime()))
+                .toList();
+        return new AchievementData(snapshot.appId(), snapshot.gameName(), total, completed, total > 0 && completed == total, recentAchievements);
+    }
 
-    // ...and utility methods for extracting achievement data from games
-    private AchievementData getAchievementData(String steamId, SteamGame game) {
-        List<SteamAchievementsResponse.GameAchievement> achievements =
-                getGameAchievements(steamId, game.appId().toString());
+    // only the most recent unlocks of every game are kept, the overall most recent ones are always among them;
+    // their names are taken from the schema, falling back to the apiname if it has none
+    private GameAchievementSnapshot toSnapshot(SteamGame game, PlayerAchievements achievements, AchievementSchema schema) {
+        List<RecentAchievement> recentAchievements = achievements.recentUnlocks().stream()
+                .map(achievement -> new RecentAchievement(game.appId(), achievementName(achievement, schema), game.name(), achievement.unlockTime()))
+                .toList();
 
-        if (!achievements.isEmpty()) {
-            int total = achievements.size();
-            long completed = achievements.stream()
-                    .filter(SteamAchievementsResponse.GameAchievement::isAchieved)
-                    .count();
+        return new GameAchievementSnapshot(game.appId(), game.name(), game.playtime(),
+                achievements.completedAchievements(), achievements.totalAchievements(), recentAchievements);
+    }
 
-            return new AchievementData(game.name(), total, (int) completed, completed == total, achievements);
+    private static String achievementName(PlayerAchievements.UnlockedAchievement achievement, AchievementSchema schema) {
+        if (achievement.name() != null) return achievement.name();
+        if (schema != null && schema.achievementNames().containsKey(achievement.apiName())) {
+            return schema.achievementNames().get(achievement.apiName());
         }
+        return achievement.apiName();
+    }
 
-        return new AchievementData(game.name(), 0, 0, false, Collections.emptyList());
-    }
-
-    private List<SteamAchievementsResponse.GameAchievement> getGameAchievements(String steamId, String appId) {
-        try {
-
-            SteamAchievementsResponse response = webClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/ISteamUserStats/GetPlayerAchievements/v1/")
-                            .queryParam("key", steamApiKey)
-                            .queryParam("steamid", steamId)
-                            .queryParam("appid", appId)
-                            .queryParam("l", "english")
-                            .build())
-                    .retrieve()
-                    .bodyToMono(SteamAchievementsResponse.class)
-                    .block();
-
-            if (response != null &&
-                    response.playerstats() != null &&
-                    Boolean.TRUE.equals(response.playerstats().success()) &&
-                    response.playerstats().achievements() != null) {
-                return response.playerstats().achievements();
-            }
+    private static boolean isForbidden(Throwable e) {
+        return e instanceof WebClientResponseException responseException && responseException.getStatusCode().value() == 403;
+    }
 
-        } catch (Exception e) {
-            log.debug("No achievements for appId {}: {}", appId, e.getMessage());
-        }
-        return Collections.emptyList();
+    private static boolean isUnauthorized(Throwable e) {
+        return e instanceof WebClientResponseException responseException && responseException.getStatusCode().value() == 401;
+    }
+
+    private static boolean isCallLimit(Throwable e) {
+        return e instanceof SteamCallLimitException;
+    }
+
+    // fetches a game's achievements; 403 (hidden achievements) is passed on, other failures complete empty,
+    // so they are not written into the snapshot and the game is requested again next time. a used up call limit
+    // is passed on too, so a partly refreshed set of games is never taken for the user's whole progress
+    private Mono<GameAchievementSnapshot> fetchGameSnapshot(String steamId, SteamGame game, SteamFetchContext context) {
+        String appId = game.appId().toString();
+
+        return fetchPlayerAchievements(steamId, appId, context)
+                .flatMap(achievements -> achievements.recentUnlocks().isEmpty()
+                        ? Mono.just(toSnapshot(game, achievements, null))
+                        : fetchGameSchema(appId, context)
+                                .onErrorResume(e -> !isCallLimit(e), e -> {
+                                    log.debug("No schema for appId {}: {}", appId, e.getMessage());
+                                    return Mono.empty();
+                                })
+                                .map(schema -> toSnapshot(game, achievements, schema))
+                                .switchIfEmpty(Mono.fromSupplier(() -> toSnapshot(game, achievements, null))))
+                .onErrorResume(e -> !isForbidden(e) && !isCallLimit(e), e -> {
+                    // steam answers games without stats with 400, which is remembered as a game without achievements
+                    if (e instanceof WebClientResponseException responseException &&
+                            responseException.getStatusCode().is4xxClientError() &&
+                            responseException.getStatusCode().value() != 429) {
+                        return Mono.just(toSnapshot(game, PlayerAchievements.NONE, null));
+                    }
+                    log.debug("No achievements for appId {}: {}", game.appId(), e.getMessage());
+                    return Mono.empty();
+                });
     }
 
-    public AchievementStats getAchievementStats(String steamId) {
+    // user's own achievement section: names are resolved only for the games that are shown
+    public Mono<AchievementStats> getAchievementStats(String steamId, SteamFetchContext context) {
+        return getAchievementStats(steamId, true, context).flatMap(this::withShownGameNames);
+    }
+
+    // achievements are refreshed incrementally: games whose playtime didn't change since the stored snapshot
+    // can't have new achievements, so only the rest are requested and then merged into the snapshot.
+    // totals of friends only need playtimes, so their libraries are fetched without appinfo and the snapshot
+    // keeps whatever names are known; shown names are looked up by appId anyway
+    private Mono<AchievementStats> getAchievementStats(String steamId, boolean includeAppInfo, SteamFetchContext context) {
+        if (visibilityCache.isHidden(ProfileVisibilityCache.Section.ACHIEVEMENTS, steamId)) {
+            log.info("Achievements are known to be hidden for SteamID: {}", steamId);
+            return Mono.just(HIDDEN_ACHIEVEMENT_STATS);
+        }
+
         log.info("Calculating achievement stats for SteamID: {}", steamId);
 
-        SteamOwnedGamesResponse response = getGamesResponse(steamId);
-        List<SteamGame> games = response.response().games();
+        Mono<Map<Long, GameAchievementSnapshot>> storedSnapshot = Mono.fromCallable(() -> achievementSnapshotStore.load(steamId))
+                .subscribeOn(Schedulers.boundedElastic());
 
-        List<SteamGame> playedGames = games.stream()
-                .filter(game -> game.playtime() > 30)
-                .toList();
+        return Mono.zip(getLibrary(steamId, includeAppInfo, context), storedSnapshot).flatMap(tuple -> {
+            CompactLibrary library = tuple.getT1();
+            Map<Long, GameAchievementSnapshot> snapshot = tuple.getT2();
 
-        log.info("Processing {} played games for achievements", playedGames.size());
-
-        // checking if achievements are hidden by testing the first game for 403 response
-        if (!playedGames.isEmpty()) {
-            SteamGame firstGame = playedGames.get(0);
-            try {
-                SteamAchievementsResponse testResponse = webClient.get()
-                        .uri(uriBuilder -> uriBuilder
-                                .path("/ISteamUserStats/GetPlayerAchievements/v1/")
-                                .queryParam("key", steamApiKey)
-                                .queryParam("steamid", steamId)
-                                .queryParam("appid", firstGame.appId().toString())
-                                .queryParam("l", "english")
-                                .build())
-                        .retrieve()
-                        .bodyToMono(SteamAchievementsResponse.class)
-                        .block();
-
-            } catch (Exception e) {
-                if (e.getMessage() != null && e.getMessage().contains("403")) {
-                    log.warn("Profile is hidden - 403 Forbidden for appId: {}", firstGame.appId());
-                    return new AchievementStats(0, 0, 0, 0, 0, true, Collections.emptyList(), Collections.emptyList());
+            List<AchievementData> unchangedGames = new ArrayList<>();
+            List<Integer> changedIndices = new ArrayList<>();
+
+            for (int i = 0; i < library.size(); i++) {
+                if (library.playtime(i) <= 30) continue;
+
+                GameAchievementSnapshot stored = snapshot.get((long) library.appId(i));
+                if (stored != null && stored.playtime() == library.playtime(i)) {
+                    unchangedGames.add(toAchievementData(stored));
+                } else {
+                    changedIndices.add(i);
                 }
             }
+
+            return refreshAchievementStats(steamId, unchangedGames,
+                    changedIndices.stream().map(library::toGame).toList(), snapshot, context);
+        });
+    }
+
+    // the rows of the section get their names from the dictionary or the catalog, falling back to the one in the snapshot
+    private Mono<AchievementStats> withShownGameNames(AchievementStats stats) {
+        if (stats.hidden()) return Mono.just(stats);
+
+        List<Integer> shownAppIds = new ArrayList<>();
+        stats.topGamesByProgress().forEach(data -> shownAppIds.add(data.appId().intValue()));
+        stats.recentAchievements().forEach(achievement -> shownAppIds.add(achievement.appId().intValue()));
+
+        return resolveGameNames(shownAppIds).then(Mono.fromCallable(() -> new AchievementStats(
+                stats.totalAchievements(),
+                stats.completedAchievements(),
+                stats.completionPercentage(),
+                stats.perfectGames(),
+                stats.averageCompletion(),
+                false,
+                stats.topGamesByProgress().stream()
+                        .map(data -> new AchievementData(data.appId(), gameName(data.appId(), data.gameName()),
+                                data.totalAchievements(), data.completedAchievements(), data.isPerfect(), data.recentAchievements()))
+                        .toList(),
+                stats.recentAchievements().stream()
+                        .map(achievement -> new RecentAchievement(achievement.appId(), achievement.achievementName(),
+                                gameName(achievement.appId(), achievement.gameName()), achievement.unlockTime()))
+                        .toList())));
+    }
+
+    private String gameName(Long appId, String storedName) {
+        String name = gameNames.get(appId.intValue());
+        return name != null ? name : storedName;
+    }
+
+    // games whose refresh failed keep their stored entry, both in the stats and in redis, so a transient
+    // failure doesn't make the totals dip for one refresh; they are requested again next time
+    private Mono<AchievementStats> refreshAchievementStats(String steamId, List<AchievementData> unchangedGames,
+                                                           List<SteamGame> changedGames,
+                                                           Map<Long, GameAchievementSnapshot> storedSnapshot,
+                                                           SteamFetchContext context) {
+        log.info("Processing {} played games for achievements, {} changed since the last snapshot",
+                unchangedGames.size() + changedGames.size(), changedGames.size());
+
+        if (changedGames.isEmpty()) {
+            return Mono.just(buildAchievementStats(withAchievements(unchangedGames)));
+        }
+
+        // a context with a call limit (e.g. the leaderboard warmer's) refuses a refresh it can't finish up front,
+        // instead of spending calls on games that would then be left out
+        if (changedGames.size() > context.getRemainingCalls()) {
+            return Mono.error(new SteamCallLimitException());
         }
 
-        List<AchievementData> achievementData = playedGames.parallelStream()
-                .map(game -> getAchievementData(steamId, game))
-                .filter(data -> data.totalAchievements > 1)
+        // checking if achievements are hidden by testing the first changed game for 403 response;
+        // the rest are requested only after the probe succeeds, and the probe's response is kept as the game's data
+        SteamGame firstGame = changedGames.get(0);
+
+        return fetchGameSnapshot(steamId, firstGame, context)
+                .flux()
+                .concatWith(Flux.fromIterable(changedGames.subList(1, changedGames.size()))
+                        .flatMap(game -> fetchGameSnapshot(steamId, game, context)
+                                .onErrorResume(e -> !isCallLimit(e), e -> Mono.empty()), achievementsConcurrency))
+                .collectList()
+                .publishOn(Schedulers.boundedElastic()) // saving the snapshot is blocking
+                .map(refreshed -> {
+                    achievementSnapshotStore.save(steamId, refreshed);
+
+                    List<AchievementData> achievementData = new ArrayList<>(unchangedGames);
+                    refreshed.forEach(refreshedGame -> achievementData.add(toAchievementData(refreshedGame)));
+
+                    Set<Long> refreshedIds = refreshed.stream().map(GameAchievementSnapshot::appId).collect(Collectors.toSet());
+                    for (SteamGame game : changedGames) {
+                        GameAchievementSnapshot stored = storedSnapshot.get(game.appId());
+                        if (stored != null && !refreshedIds.contains(game.appId())) {
+                            achievementData.add(toAchievementData(stored));
+                        }
+                    }
+                    return buildAchievementStats(withAchievements(achievementData));
+                })
+                .onErrorResume(SteamService::isForbidden, e -> {
+                    log.warn("Profile is hidden - 403 Forbidden for appId: {}", firstGame.appId());
+                    visibilityCache.markHidden(ProfileVisibilityCache.Section.ACHIEVEMENTS, steamId);
+                    return Mono.just(HIDDEN_ACHIEVEMENT_STATS);
+                });
+    }
+
+    // games with a single achievement are not counted in stats
+    private static List<AchievementData> withAchievements(List<AchievementData> achievementData) {
+        return achievementData.stream()
+                .filter(data -> data.totalAchievements() > 1)
                 .toList();
+    }
 
+    AchievementStats buildAchievementStats(List<AchievementData> achievementData) {
         // sorting by completion percentage
         List<AchievementData> topByProgress = achievementData.stream()
                 .sorted(Comparator.comparingDouble((AchievementData data) ->
@@ -337,15 +606,8 @@ public class SteamService {
                 .collect(Collectors.toList());
 
         // getting recent achievements
-        List<RecentAchievement> recentAchievements = achievementData.parallelStream()
-                .flatMap(data -> data.allAchievements().stream()
-                        .filter(SteamAchievementsResponse.GameAchievement::isAchieved)
-                        .map(achievement -> new RecentAchievement(
-                                achievement.name(),
-                                data.gameName(),
-                                achievement.unlockTime()
-                        ))
-                )
+        List<RecentAchievement> recentAchievements = achievementData.stream()
+                .flatMap(data -> data.recentAchievements().stream())
                 .sorted(Comparator.comparingLong(RecentAchievement::unlockTime).reversed())
                 .limit(ACHIEVEMENTS_IN_OUTPUT)
                 .collect(Collectors.toList());
@@ -447,7 +709,7 @@ public class SteamService {
         return message.toString();
     }
 
-    // converts achievements' unlock time into "[n] [unit(s)] ago"
+    // converts achievements' unlock time (or any other epoch seconds) into "[n] [unit(s)] ago"
     private String convertToTimeAgo(Long unlockTime) {
         if (unlockTime == null) return "unknown";
 
@@ -483,140 +745,122 @@ public class SteamService {
     // FRIENDS SECTION
     /// //////////////////////////////////////////////
 
-    // utility record for aggregating friends' stats by game
-    private record GameAggregate(String gameName, int friendCount, int totalPlaytime) {}
+    // utility record for a friend list, hidden is true if steam answered 401 for it
+    private record FriendList(List<String> ids, boolean hidden) {}
 
     // and utility method for getting friends' id
-    private List<String> getFriendIds(String steamId) {
+    private Mono<FriendList> getFriendIds(String steamId, SteamFetchContext context) {
+        if (visibilityCache.isHidden(ProfileVisibilityCache.Section.FRIENDS, steamId)) {
+            return Mono.just(new FriendList(Collections.emptyList(), true));
+        }
+
         log.info("Fetching friends' SteamIDs for Steam ID: {}", steamId);
-        try {
-            SteamFriendsResponse response = webClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/ISteamUser/GetFriendList/v1/")
-                            .queryParam("key", steamApiKey)
-                            .queryParam("steamid", steamId)
-                            .queryParam("relationship", "friend")
-                            .build())
-                    .retrieve()
-                    .bodyToMono(SteamFriendsResponse.class)
-                    .block();
-
-            if (response != null && response.friendslist() != null && response.friendslist().friends() != null) {
-                return response.friendslist().friends().stream()
+
+        return fetchFriendList(steamId, context)
+                .filter(response -> response.friendslist() != null && response.friendslist().friends() != null)
+                .map(response -> new FriendList(response.friendslist().friends().stream()
                         .map(SteamFriendsResponse.Friend::steamId)
-                        .collect(Collectors.toList());
-            }
-        } catch (Exception e) {
-            // 401 means friend list is hidden, in that case we return null
-            if (e.getMessage() != null && e.getMessage().contains("401")) {
-                log.warn("Friends list is hidden for {}: 401 Unauthorized", steamId);
-                return null;
-            }
-            log.warn("Could not fetch friends list for {}: {}", steamId, e.getMessage());
-        }
-        return Collections.emptyList();
+                        .collect(Collectors.toList()), false))
+                .onErrorResume(e -> {
+                    // 401 means friend list is hidden
+                    if (isUnauthorized(e)) {
+                        log.warn("Friends list is hidden for {}: 401 Unauthorized", steamId);
+                        visibilityCache.markHidden(ProfileVisibilityCache.Section.FRIENDS, steamId);
+                        return Mono.just(new FriendList(Collections.emptyList(), true));
+                    }
+                    log.warn("Could not fetch friends list for {}: {}", steamId, e.getMessage());
+                    return Mono.empty();
+                })
+                .defaultIfEmpty(new FriendList(Collections.emptyList(), false));
     }
 
 
     // returns a map 'steamID -> nickname'
-    private Map<String, String> getFriendNames(List<String> friendIds) {
-        if (friendIds.isEmpty()) return Collections.emptyMap();
-
-        try {
-
-            // merging all friends' IDs into a single string for an API request
-            String steamIds = String.join(",", friendIds);
-            log.info("Friends' SteamIDs in a single string: {}", steamIds);
-
-            SteamPlayerSummariesResponse response = webClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/ISteamUser/GetPlayerSummaries/v2/")
-                            .queryParam("key", steamApiKey)
-                            .queryParam("steamids", steamIds)
-                            .build())
-                    .retrieve()
-                    .bodyToMono(SteamPlayerSummariesResponse.class)
-                    .block();
-
-            if (response != null && response.response() != null && response.response().players() != null) {
-                return response.response().players().stream()
-                        .collect(Collectors.toMap(
-                                SteamPlayerSummariesResponse.Player::steamId,
-                                SteamPlayerSummariesResponse.Player::personaName
-                        ));
-            }
-        } catch (Exception e) {
-            log.debug("Could not fetch friend names: {}", e.getMessage());
-        }
-
-        return Collections.emptyMap();
+    private Mono<Map<String, String>> getFriendNames(List<String> friendIds, SteamFetchContext context) {
+        return getPlayerNames(friendIds, context);
     }
 
-    public List<FriendGameStats> getPopularGamesAmongFriends(String steamId) {
+    public Mono<List<FriendGameStats>> getPopularGamesAmongFriends(String steamId, SteamFetchContext context) {
         log.info("Getting popular games among friends for SteamID: {}", steamId);
 
         // getting a friend list
-        List<String> friendIds = getFriendIds(steamId);
-
-        // if we got null from our utility method, the user has his friend list hidden
-        if (friendIds == null) {
-            log.info("Friends list is hidden for user: {}", steamId);
-
-            // in which case we return a list of one element with the hidden field set to true
-            return List.of(new FriendGameStats("", 0L, 0, 0, 0, true));
-        }
+        return getFriendIds(steamId, context).flatMap(friendList -> {
 
-        if (friendIds.isEmpty()) {
-            log.info("No friends found for user: {}", steamId);
-            return Collections.emptyList();
-        }
-
-        log.info("Found {} friends, analyzing their libraries", friendIds.size());
+            if (friendList.hidden()) {
+                log.info("Friends list is hidden for user: {}", steamId);
 
-        // collecting friends' stats
-        Map<Long, GameAggregate> gameStats = new HashMap<>();
+                // in which case we return a list of one element with the hidden field set to true
+                return Mono.just(List.of(new FriendGameStats("", 0L, 0, 0, 0, true)));
+            }
 
-        friendIds.parallelStream().forEach(friendId -> {
-            try {
-                List<SteamGame> friendGames = getGames(friendId);
+            List<String> friendIds = friendList.ids();
+            if (friendIds.isEmpty()) {
+                log.info("No friends found for user: {}", steamId);
+                return Mono.just(Collections.<FriendGameStats>emptyList());
+            }
 
-                // updating aggregated stats for every friend's game
-                friendGames.forEach(game -> {
-                    gameStats.compute(game.appId(), (appId, aggregate) -> {
+            log.info("Found {} friends, analyzing their libraries", friendIds.size());
+            DistributionSummary.builder("steam.friends.fanout")
+                    .description("Friends whose libraries one friends view fans out to")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(friendIds.size());
+
+            // collecting friends' stats: libraries are added to the aggregator as soon as they arrive,
+            // concurrently, without keeping them all in memory
+            GamePopularityAggregator aggregator = new GamePopularityAggregator();
+
+            return primeOwnedGames(friendIds, context)
+                    .thenMany(Flux.fromIterable(friendIds))
+                    .flatMap(friendId -> getFriendLibrary(friendId, context)
+                            .doOnNext(aggregator::addLibrary)
+                            .onErrorResume(e -> {
+                                log.debug("Could not fetch games for friend {}. Reason: {}", friendId, e.getMessage());
+                                return Mono.empty();
+                            }), friendsConcurrency)
+                    .then(Mono.fromCallable(() -> sortPopularGames(aggregator)))
+                    .flatMap(popularGames -> resolveGameNames(popularGames.stream()
+                                    .map(game -> game.appId().intValue())
+                                    .toList())
+                            .then(Mono.fromCallable(() -> withGameNames(popularGames))));
+        });
+    }
 
-                        // if we don't have stats for this game yet, we create it
-                        if (aggregate == null) {
-                            return new GameAggregate(game.name(), 1, game.playtime());
-                        }
+    // friends' libraries come without names, so the ranked games get theirs once they are resolved;
+    // games that have no name anywhere are left out
+    private List<FriendGameStats> withGameNames(List<FriendGameStats> popularGames) {
+        return popularGames.stream()
+                .map(game -> game.gameName() != null ? game : new FriendGameStats(
+                        gameNames.get(game.appId().intValue()),
+                        game.appId(),
+                        game.friendCount(),
+                        game.avgPlaytimeHours(),
+                        game.totalPlaytimeHours(),
+                        false
+                ))
+                .filter(game -> game.gameName() != null)
+                .toList();
+    }
 
-                        // otherwise we update the stats by increasing the friend count by one and total playtime by this friend's playtime
-                        return new GameAggregate(
-                                aggregate.gameName(),
-                                aggregate.friendCount() + 1,
-                                aggregate.totalPlaytime() + game.playtime()
-                        );
-                    });
-                });
-            } catch (Exception e) {
-                log.debug("Could not fetch games for friend {}. Reason: {}", friendId, e.getMessage());
+    List<FriendGameStats> sortPopularGames(GamePopularityAggregator aggregator) {
+        List<FriendGameStats> popularGames = new ArrayList<>();
+
+        // only games passing the playtime filter become objects
+        aggregator.forEach((appId, friendCount, totalPlaytime) -> {
+            double avgHours = totalPlaytime / (double) friendCount / 60;
+            if (avgHours > MINIMUM_HOURS_FOR_STATS) {
+                popularGames.add(new FriendGameStats(
+                        gameNames.get((int) appId),
+                        appId,
+                        friendCount,
+                        avgHours,
+                        (int) (totalPlaytime / 60),
+                        false
+                ));
             }
         });
 
-        // sorting
-        return gameStats.entrySet().stream()
-                .map(entry -> {
-                    GameAggregate agg = entry.getValue();
-                    double avgHours = agg.totalPlaytime() / (double) agg.friendCount() / 60;
-                    return new FriendGameStats(
-                            agg.gameName(),
-                            entry.getKey(),
-                            agg.friendCount(),
-                            avgHours,
-                            agg.totalPlaytime() / 60,
-                            false
-                    );
-                })
-                .filter(stats -> stats.avgPlaytimeHours() > MINIMUM_HOURS_FOR_STATS)
+        return popularGames.stream()
                 .sorted((s1, s2) -> {
                     int compare = s2.friendCount() - s1.friendCount();
                     if (compare != 0) {
@@ -632,123 +876,168 @@ public class SteamService {
 
 
     // calculates shared games info for one friend
-    private FriendGameOverlap calculateOverlapWithFriend(String friendId, Map<String, String> friendNames, Set<Long> myGameIds, List<SteamGame> myGames) {
-        try {
-            // getting friend's games
-            List<SteamGame> friendGames = getGames(friendId);
-            Set<Long> friendGameIds = friendGames.stream()
-                    .map(SteamGame::appId)
-                    .collect(Collectors.toSet());
-
-            // finding shared games
-            Set<Long> sharedGameIds = new HashSet<>(myGameIds);
-            sharedGameIds.retainAll(friendGameIds); // keeping only shared games
-
-            // getting most played shared games
-            List<String> sampleGames = myGames.stream()
-                    .filter(game -> sharedGameIds.contains(game.appId()))
-                    .sorted(Comparator.comparing(SteamGame::playtime).reversed())
-                    .map(SteamGame::name)
-                    .limit(FRIENDS_IN_SHARING_OUTPUT)
-                    .collect(Collectors.toList());
-
-            // getting friend's name from the map
-            String friendName = friendNames.getOrDefault(friendId, "Friend");
-
-            return new FriendGameOverlap(friendName, friendId, sharedGameIds.size(), sampleGames);
-
-        } catch (Exception e) {
-            log.debug("Could not calculate overlap with friend {}: {}", friendId, e.getMessage());
-            return new FriendGameOverlap("Friend", friendId, 0, Collections.emptyList());
-        }
+    Mono<FriendGameOverlap> calculateOverlapWithFriend(String friendId, Map<String, String> friendNames, GameOverlapEngine overlapEngine, SteamFetchContext context) {
+        // getting friend's games
+        return getFriendLibrary(friendId, context)
+                .map(friendLibrary -> {
+                    // counting shared games by intersecting both libraries' bitmaps
+                    int sharedGames = overlapEngine.sharedCount(friendLibrary);
+
+                    // getting most played shared games
+                    List<String> sampleGames = sharedGames > 0
+                            ? overlapEngine.topShared(friendLibrary, FRIENDS_IN_SHARING_OUTPUT)
+                            : Collections.emptyList();
+
+                    // getting friend's name from the map
+                    String friendName = friendNames.getOrDefault(friendId, "Friend");
+
+                    return new FriendGameOverlap(friendName, friendId, sharedGames, sampleGames);
+                })
+                .onErrorResume(e -> {
+                    log.debug("Could not calculate overlap with friend {}: {}", friendId, e.getMessage());
+                    return Mono.just(new FriendGameOverlap("Friend", friendId, 0, Collections.emptyList()));
+                });
     }
 
 
-    public List<FriendGameOverlap> getTopGameOverlaps(String steamId) {
+    public Mono<List<FriendGameOverlap>> getTopGameOverlaps(String steamId, SteamFetchContext context) {
         log.info("Calculating game overlaps for SteamID: {}", steamId);
 
-        // getting user's games
-        List<SteamGame> myGames = getGames(steamId);
-        Set<Long> myGameIds = myGames.stream()
-                .map(SteamGame::appId)
-                .collect(Collectors.toSet());
+        // getting user's games and user's friends' IDs
+        return Mono.zip(getLibrary(steamId, context), getFriendIds(steamId, context)).flatMap(tuple -> {
+            // user's games are sorted by playtime once for all friends
+            GameOverlapEngine overlapEngine = new GameOverlapEngine(tuple.getT1());
 
-        // getting user's friends' IDs
-        List<String> friendIds = getFriendIds(steamId);
-        if (friendIds == null || friendIds.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        // getting user's friends' nicknames
-        Map<String, String> friendNames = getFriendNames(friendIds);
+            List<String> friendIds = tuple.getT2().ids();
+            if (friendIds.isEmpty()) {
+                return Mono.just(Collections.<FriendGameOverlap>emptyList());
+            }
 
-        // finding shared games for each of the friends
-        return friendIds.parallelStream()
-                .map(friendId -> calculateOverlapWithFriend(
-                        friendId,
-                        friendNames,
-                        myGameIds,
-                        myGames
-                ))
-                .sorted(Comparator.comparingInt(FriendGameOverlap::sharedGamesCount).reversed())
-                .limit(FRIENDS_IN_SHARING_OUTPUT)
-                .collect(Collectors.toList());
+            // getting user's friends' nicknames, then finding shared games for each of the friends
+            return primeOwnedGames(friendIds, context)
+                    .then(getFriendNames(friendIds, context))
+                    .flatMap(friendNames -> Flux.fromIterable(friendIds)
+                            .flatMap(friendId -> calculateOverlapWithFriend(
+                                    friendId,
+                                    friendNames,
+                                    overlapEngine,
+                                    context
+                            ), friendsConcurrency)
+                            .sort(Comparator.comparingInt(FriendGameOverlap::sharedGamesCount).reversed())
+                            .take(FRIENDS_IN_SHARING_OUTPUT)
+                            .collectList());
+        });
     }
 
-    public List<FriendAchievementLeaderboard> getAchievementLeaderboard(String steamId) {
+    // totals are precomputed by the leaderboard warmer, so usually only the user's own total is computed here.
+    // only a few friends missing from the store (e.g. a session that was just created) are computed on the fly,
+    // the others are listed as pending after the ranked entries until the warmer computes them
+    public Mono<List<FriendAchievementLeaderboard>> getAchievementLeaderboard(String steamId, SteamFetchContext context) {
         log.info("Building achievement leaderboard for SteamID: {}", steamId);
 
-        List<String> friendIds = getFriendIds(steamId);
-        if (friendIds == null) {
-            return Collections.emptyList(); // friends are hidden
-        }
+        return getFriendIds(steamId, context).flatMap(friendList -> {
+            if (friendList.hidden()) {
+                return Mono.just(Collections.<FriendAchievementLeaderboard>emptyList()); // friends are hidden
+            }
 
-        // adding user's ID to a list of their friends' IDs
-        List<String> allUsers = new ArrayList<>(friendIds);
-        allUsers.add(steamId);
-
-        Map<String, String> userNames = getFriendNames(allUsers);
-
-
-        return allUsers.parallelStream()
-                .map(userId -> {
-                    try {
-                        AchievementStats achievementStats = getAchievementStats(userId);
-
-                        String name = userNames.getOrDefault(userId, "Unknown");
-                        boolean isCurrentUser = userId.equals(steamId); // if the current processed ID is user's, set this to true for further processing
-
-                        return new FriendAchievementLeaderboard(
-                                name,
-                                userId,
-                                achievementStats.completedAchievements(),
-                                isCurrentUser
-                        );
-                    } catch (SteamPrivateProfileException e) {
-                        log.debug("Private profile for {}: {}", userId, e.getMessage());
-                        return new FriendAchievementLeaderboard(
-                                userNames.getOrDefault(userId, "Private Profile"),
-                                userId, 0, false
-                        );
-                    } catch (Exception e) {
-                        log.debug("Could not fetch achievements for user {}: {}", userId, e.getMessage());
-                        return new FriendAchievementLeaderboard(
-                                userNames.getOrDefault(userId, "Unknown"),
-                                userId, 0, false
-                        );
-                    }
+            // adding user's ID to a list of their friends' IDs
+            List<String> allUsers = new ArrayList<>(friendList.ids());
+            allUsers.add(steamId);
+
+            Mono<Map<String, AchievementTotal>> storedTotals = Mono.fromCallable(() -> achievementTotalsStore.getAll(friendList.ids()))
+                    .subscribeOn(Schedulers.boundedElastic());
+
+            return Mono.zip(storedTotals, getFriendNames(allUsers, context)).flatMap(tuple -> {
+                Map<String, AchievementTotal> totals = tuple.getT1();
+                Map<String, String> userNames = tuple.getT2();
+
+                // the user's own total is always recomputed, it's incremental and shares calls with the user's achievement section.
+                // friends known to be hidden are neither computed nor listed
+                List<String> missingFriends = friendList.ids().stream()
+                        .filter(userId -> !totals.containsKey(userId) && !isKnownHidden(userId))
+                        .toList();
+                List<String> computed = new ArrayList<>(missingFriends.subList(0, Math.min(leaderboardInlineFriends, missingFriends.size())));
+                computed.add(steamId);
+                List<String> pending = missingFriends.subList(computed.size() - 1, missingFriends.size());
+                log.debug("Leaderboard of {}: {} precomputed totals, {} to compute, {} pending",
+                        steamId, totals.size(), computed.size(), pending.size());
+
+                List<String> ranked = allUsers.stream()
+                        .filter(userId -> computed.contains(userId) || (totals.containsKey(userId) && !totals.get(userId).hidden()))
+                        .toList();
+
+                List<FriendAchievementLeaderboard> pendingEntries = pending.stream()
+                        .map(userId -> new FriendAchievementLeaderboard(
+                                userNames.getOrDefault(userId, "Unknown"), userId, 0, false, null, true))
+                        .toList();
+
+                return primeOwnedGames(computed, context)
+                        .thenMany(Flux.fromIterable(ranked))
+                        .flatMap(userId -> {
+                            boolean isCurrentUser = userId.equals(steamId); // if the current processed ID is user's, set this to true for further processing
+                            Mono<AchievementTotal> total = isCurrentUser || !totals.containsKey(userId)
+                                    ? refreshAchievementTotal(userId, isCurrentUser, context)
+                                    : Mono.just(totals.get(userId));
+
+                            return total
+                                    .filter(achievementTotal -> !achievementTotal.hidden())
+                                    .map(achievementTotal -> new FriendAchievementLeaderboard(
+                                            userNames.getOrDefault(userId, "Unknown"),
+                                            userId,
+                                            achievementTotal.completedAchievements(),
+                                            isCurrentUser,
+                                            achievementTotal.updatedAt(),
+                                            false
+                                    ))
+                                    .onErrorResume(e -> {
+                                        log.debug("Could not fetch achievements for user {}: {}", userId, e.getMessage());
+                                        return Mono.just(new FriendAchievementLeaderboard(
+                                                userNames.getOrDefault(userId, "Unknown"),
+                                                userId, 0, false, null, false
+                                        ));
+                                    });
+                        }, friendsConcurrency)
+                        .sort(Comparator.comparingInt(FriendAchievementLeaderboard::totalAchievements).reversed())
+                        .take(FRIENDS_IN_LEADERBOARD_OUTPUT)
+                        .concatWith(Flux.fromIterable(pendingEntries))
+                        .collectList();
+            });
+        });
+    }
+
+    // public for the leaderboard warmer: friends of a user, empty if the friend list is hidden
+    public Mono<List<String>> getFriendSteamIds(String steamId, SteamFetchContext context) {
+        return getFriendIds(steamId, context).map(FriendList::ids);
+    }
+
+    // users whose library or achievements were recently found private, without any network I/O
+    private boolean isKnownHidden(String steamId) {
+        return visibilityCache.isHidden(ProfileVisibilityCache.Section.LIBRARY, steamId)
+                || visibilityCache.isHidden(ProfileVisibilityCache.Section.ACHIEVEMENTS, steamId);
+    }
+
+    // computes the completed-achievement total of a user and stores it for leaderboards;
+    // private profiles are stored as hidden, so they aren't ranked nor recomputed on every leaderboard request.
+    // includeAppInfo is only set for the user's own total, which shares its library with the user's other sections
+    public Mono<AchievementTotal> refreshAchievementTotal(String steamId, boolean includeAppInfo, SteamFetchContext context) {
+        return getAchievementStats(steamId, includeAppInfo, context)
+                .map(stats -> new AchievementTotal(stats.completedAchievements(), stats.hidden(), System.currentTimeMillis()))
+                .onErrorResume(SteamPrivateProfileException.class, e -> {
+                    log.debug("Private profile for {}: {}", steamId, e.getMessage());
+                    return Mono.just(new AchievementTotal(0, true, System.currentTimeMillis()));
                 })
-                .sorted(Comparator.comparingInt(FriendAchievementLeaderboard::totalAchievements).reversed())
-                .limit(FRIENDS_IN_LEADERBOARD_OUTPUT)
-                .collect(Collectors.toList());
+                .publishOn(Schedulers.boundedElastic()) // writing to the store is blocking
+                .doOnNext(total -> achievementTotalsStore.put(steamId, total));
     }
 
 
+    // sections that are still loading are passed as null and skipped, so the message can be shown while it's being built;
+    // the leaderboard section is shown once the leaderboard, user's achievement stats and nickname are all there
     public String formatFriendGamesMessage(List<FriendGameStats> friendGames, List<FriendGameOverlap> overlaps, List<FriendAchievementLeaderboard> leaderboard, AchievementStats userAchievementStats, String nickname) {
 
         // if the friend list is hidden, then the friend games list that this method accepts will only have one element, so we can
         // get the first element and check the value of its 'hidden' field
-        boolean isFriendsHidden = !friendGames.isEmpty() && friendGames.get(0).hidden();
+        boolean isFriendsHidden = friendGames != null && !friendGames.isEmpty() && friendGames.get(0).hidden();
 
         if (isFriendsHidden) {
             return """
@@ -763,27 +1052,28 @@ public class SteamService {
         }
 
 
-        if (friendGames.isEmpty()) {
+        if (friendGames != null && friendGames.isEmpty()) {
             return "";
         }
 
-        String safeNickname = escapeMarkdown(nickname);
-
         StringBuilder message = new StringBuilder();
-        message.append("👥 *Popular Among Friends:*\n\n");
 
-        for (int i = 0; i < friendGames.size(); i++) {
-            FriendGameStats stats = friendGames.get(i);
-            message.append(String.format(
-                    "*%d.* %s - %d friends, %.0f avg hours\n",
-                    i + 1,
-                    stats.gameName(),
-                    stats.friendCount(),
-                    stats.avgPlaytimeHours()
-            ));
+        if (friendGames != null) {
+            message.append("👥 *Popular Among Friends:*\n\n");
+
+            for (int i = 0; i < friendGames.size(); i++) {
+                FriendGameStats stats = friendGames.get(i);
+                message.append(String.format(
+                        "*%d.* %s - %d friends, %.0f avg hours\n",
+                        i + 1,
+                        stats.gameName(),
+                        stats.friendCount(),
+                        stats.avgPlaytimeHours()
+                ));
+            }
         }
 
-        if (!overlaps.isEmpty()) {
+        if (overlaps != null && !overlaps.isEmpty()) {
             message.append("\n🎮 *Games You Share:*\n\n");
 
             for (FriendGameOverlap overlap : overlaps) {
@@ -799,27 +1089,46 @@ public class SteamService {
 
         }
 
-        if (!leaderboard.isEmpty()) {
+        if (leaderboard == null || userAchievementStats == null || nickname == null) {
+            return message.toString();
+        }
+
+        String safeNickname = escapeMarkdown(nickname);
+
+        // pending friends come after the ranked entries
+        List<FriendAchievementLeaderboard> ranked = leaderboard.stream()
+                .filter(entry -> !entry.pending())
+                .toList();
+        long pendingFriends = leaderboard.size() - ranked.size();
+
+        if (!ranked.isEmpty()) {
             message.append("\n🏅 *Achievement Leaderboard (only friends with public achievement info):*\n\n");
 
             String[] medals = {"🥇", "🥈", "🥉"};
 
-            for (int i = 0; i < leaderboard.size(); i++) {
-                FriendAchievementLeaderboard entry = leaderboard.get(i);
+            for (int i = 0; i < ranked.size(); i++) {
+                FriendAchievementLeaderboard entry = ranked.get(i);
                 String medal = i < 3 ? medals[i] : (i + 1) + "."; // adding medals for places 1-3, and simple dot for others
                 String name = entry.isCurrentUser() ? "👤*" + entry.friendName() + "*" : entry.friendName();
 
 
+                // precomputed totals can be a bit stale, so their age is shown
+                String age = entry.updatedAt() != null ? " _(" + convertToTimeAgo(entry.updatedAt() / 1000) + ")_" : "";
+
                 message.append(String.format(
-                        "%s %s - %,d achievements\n",
-                        medal, name, entry.totalAchievements()
+                        "%s %s - %,d achievements%s\n",
+                        medal, name, entry.totalAchievements(), age
                 ));
             }
         }
-        boolean currentUserInLeaderboard = leaderboard.stream()
+        if (pendingFriends > 0) {
+            message.append(String.format("⏳ _%d more friends are still being counted, check back in a few minutes_\n", pendingFriends));
+        }
+
+        boolean currentUserInLeaderboard = ranked.stream()
                 .anyMatch(FriendAchievementLeaderboard::isCurrentUser);
 
-        if (!currentUserInLeaderboard && userAchievementStats != null) {
+        if (!currentUserInLeaderboard) {
             message.append("............\n");
             message.append(String.format(
                     "👤 *%s* - %,d achievements",
@@ -831,7 +1140,7 @@ public class SteamService {
         return message.toString();
     }
 
-    private String escapeMarkdown(String text) {
+    String escapeMarkdown(String text) {
         if (text == null) return "";
 
         return text.replace("_", "\\_")
@@ -854,16 +1163,56 @@ public class SteamService {
                 .replace("!", "\\!");
     }
 
+    /// //////////////////////////////////////////////
+    // PREFETCH
+    /// //////////////////////////////////////////////
+
+    // warms what the heavy views need into the context, cheapest and most likely needed first: friend list and
+    // names, then user's own achievements, then friends' libraries. it stops starting new calls once the context
+    // has performed callBudget calls; own achievements are skipped if the library alone could exceed the budget
+    public Mono<Void> prefetchHeavyViews(String steamId, SteamFetchContext context, int callBudget) {
+        Mono<Void> friendNames = getFriendIds(steamId, context)
+                .filter(friendList -> !friendList.hidden() && !friendList.ids().isEmpty())
+                .flatMap(friendList -> getFriendNames(friendList.ids(), context))
+                .then();
+
+        Mono<Void> ownAchievements = getLibrary(steamId, context)
+                .filter(library -> library.size() <= callBudget - context.getSentCalls())
+                .flatMap(library -> getAchievementStats(steamId, context))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+
+        Mono<Void> friendLibraries = getFriendIds(steamId, context)
+                .filter(friendList -> !friendList.hidden())
+                .flatMap(friendList -> primeOwnedGames(friendList.ids(), context)
+                        .thenMany(Flux.fromIterable(friendList.ids()))
+                        .takeWhile(friendId -> context.getSentCalls() < callBudget)
+                        .flatMap(friendId -> getFriendLibrary(friendId, context)
+                                .onErrorResume(e -> Mono.empty()), friendsConcurrency)
+                        .then());
+
+        return friendNames
+                .then(ownAchievements)
+                .then(friendLibraries)
+                .onErrorResume(e -> {
+                    log.debug("Prefetch for {} stopped: {}", steamId, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+
     /// ////////////////////////////////////////////////////////////////////////////
     // GAMES BY PLAYTIME IN LAST 2 WEEKS
     /// ///////////////////////////////////////////////////////////////////////////
-    public List<SteamGame> getRecentGames(String steamId) {
-        SteamOwnedGamesResponse response = getGamesResponse(steamId);
-
+    public Mono<List<SteamGame>> getRecentGames(String steamId, SteamFetchContext context) {
         // filtering games with playtime in the last 2 weeks
-        return response.response().games().stream()
-                .filter(game -> game.playtime_2weeks() != null && game.playtime_2weeks() > 0) // steam api returns null if the game was not played, so we need an explicit non-null check first
-                .collect(Collectors.toList());
+        return getLibrary(steamId, context).flatMap(library -> {
+            int[] recentlyPlayed = library.recentlyPlayed();
+            return resolveGameNames(appIdsOf(library, recentlyPlayed))
+                    .then(Mono.fromCallable(() -> library.toGames(recentlyPlayed).stream()
+                            .filter(game -> game.name() != null)
+                            .toList()));
+        });
     }
 
     public List<SteamGame> getTopRecentGamesByPlaytime(List<SteamGame> games) {
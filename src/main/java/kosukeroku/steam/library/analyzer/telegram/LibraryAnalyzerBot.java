@@ -1,11 +1,15 @@
 package kosukeroku.steam.library.analyzer.telegram;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import kosukeroku.steam.library.analyzer.service.BotService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
@@ -20,14 +24,29 @@ public class LibraryAnalyzerBot extends TelegramLongPollingBot {
 
     private final String botUsername;
     private final BotService botService;
+    private final UpdateDispatcher updateDispatcher;
+    private final MeterRegistry meterRegistry;
+    private static final String LOADING_MESSAGE = "⏳ *Loading data, please wait...*";
+
+    // telegram allows about one edit of a message per second
+    @Value("${app.bot.edit-interval-ms:1000}")
+    private Long editIntervalMillis;
 
     public LibraryAnalyzerBot(
             @Value("${telegram.bot.token}") String botToken,
             @Value("${telegram.bot.username}") String botUsername,
-            BotService botService) {
+            BotService botService,
+            UpdateDispatcher updateDispatcher,
+            MeterRegistry meterRegistry) {
         super(botToken);
         this.botUsername = botUsername;
         this.botService = botService;
+        this.updateDispatcher = updateDispatcher;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("bot.updates.pending", updateDispatcher, UpdateDispatcher::getPendingUpdates)
+                .description("Updates accepted by the dispatcher and not finished yet")
+                .register(meterRegistry);
     }
 
     @Override
@@ -35,8 +54,54 @@ public class LibraryAnalyzerBot extends TelegramLongPollingBot {
         return botUsername;
     }
 
+    // called on the long polling thread, so the update is only handed over to the dispatcher here.
+    // an update rejected by a full dispatcher is dropped, long polling has already confirmed it to telegram
     @Override
     public void onUpdateReceived(Update update) {
+        if (!offerUpdate(update)) {
+            log.warn("Dropped an update, too many updates are already pending");
+        }
+    }
+
+    // hands the update over to the dispatcher; false if the dispatcher is full and the update was not accepted
+    public boolean offerUpdate(Update update) {
+        Long chatId = getChatId(update);
+        if (chatId == null) {
+            return true; // nothing we process
+        }
+
+        // end-to-end latency: waiting behind earlier updates of the chat, processing and replying
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String updateType = update.hasCallbackQuery() ? "button" : "message";
+
+        boolean accepted = updateDispatcher.dispatch(chatId, () -> {
+            try {
+                handleUpdate(update);
+            } finally {
+                sample.stop(Timer.builder("bot.update.latency")
+                        .description("Time from receiving an update to finishing its reply")
+                        .tag("type", updateType)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+            }
+        });
+
+        if (!accepted) {
+            meterRegistry.counter("bot.updates.rejected", "type", updateType).increment();
+        }
+        return accepted;
+    }
+
+    private Long getChatId(Update update) {
+        if (update.hasMessage() && update.getMessage().hasText()) {
+            return update.getMessage().getChatId();
+        } else if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        return null;
+    }
+
+    private void handleUpdate(Update update) {
         try {
             if (update.hasMessage() && update.getMessage().hasText()) {
                 handleTextMessage(update); // processing text messages
@@ -71,24 +136,19 @@ public class LibraryAnalyzerBot extends TelegramLongPollingBot {
         String callbackData = update.getCallbackQuery().getData();
         long chatId = update.getCallbackQuery().getMessage().getChatId();
 
-        // message to send before starting calculations—subject to remove later if a way to make processing near-instant is found
-            SendMessage waitMessage = new SendMessage();
-            waitMessage.setChatId(String.valueOf(chatId));
-            waitMessage.setText("⏳ *Loading data, please wait...*");
-            waitMessage.setParseMode("Markdown");
-            execute(waitMessage);
+        // the loading message is edited in place as the result is built, and becomes the result in the end
+        SendMessage waitMessage = new SendMessage();
+        waitMessage.setChatId(String.valueOf(chatId));
+        waitMessage.setText(LOADING_MESSAGE);
+        waitMessage.setParseMode("Markdown");
+        Message sent = execute(waitMessage);
 
+        ProgressiveMessage message = new ProgressiveMessage(this, String.valueOf(chatId), sent.getMessageId(),
+                LOADING_MESSAGE, editIntervalMillis);
 
-        String response = botService.handleButtonResponse(callbackData, chatId);
+        String response = botService.handleButtonResponse(callbackData, chatId, message::update);
 
-        SendMessage message = new SendMessage();
-        message.setChatId(String.valueOf(chatId));
-        message.setText(response);
-        message.setParseMode("Markdown");
-
-        message.setReplyMarkup(createMainMenuKeyboard());
-
-        execute(message);
+        message.complete(response, createMainMenuKeyboard());
     }
 
     private InlineKeyboardMarkup createMainMenuKeyboard() {
@@ -0,0 +1,142 @@
+package kosukeroku.steam.library.analyzer.telegram;
+
+import lombok.extern.slf4j.Slf4j;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// a message that is edited in place while its content is being built, e.g. the loading message of a button click.
+// telegram limits how often one message may be edited, so edits are at least minIntervalMillis apart: an update
+// coming too early is held back and sent when the interval runs out, replaced by any newer update in the meantime.
+// a lock instead of synchronized, as edits are blocking calls made from virtual threads
+@Slf4j
+class ProgressiveMessage {
+
+    private final DefaultAbsSender sender;
+    private final String chatId;
+    private final Integer messageId;
+    private final long minIntervalMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long lastEditAt;
+    private String lastText;
+    private String pendingText;
+    private boolean completed;
+
+    ProgressiveMessage(DefaultAbsSender sender, String chatId, Integer messageId, String initialText, long minIntervalMillis) {
+        this.sender = sender;
+        this.chatId = chatId;
+        this.messageId = messageId;
+        this.minIntervalMillis = minIntervalMillis;
+        this.lastText = initialText;
+        this.lastEditAt = System.currentTimeMillis();
+    }
+
+    // shows a partial result, may be called from any thread
+    void update(String text) {
+        lock.lock();
+        try {
+            if (completed) return;
+
+            long waitMillis = lastEditAt + minIntervalMillis - System.currentTimeMillis();
+            if (waitMillis <= 0) {
+                edit(text, null);
+                return;
+            }
+
+            // only one delayed edit is scheduled, it sends the latest text when it fires
+            boolean flushScheduled = pendingText != null;
+            pendingText = text;
+            if (!flushScheduled) {
+                Thread.ofVirtual().start(() -> flushAfter(waitMillis));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // shows the final result with a keyboard, waiting for the edit interval if needed;
+    // if the message can't be edited anymore the result is sent as a new message
+    void complete(String text, InlineKeyboardMarkup keyboard) throws TelegramApiException {
+        long waitMillis;
+        lock.lock();
+        try {
+            completed = true; // a delayed edit firing from now on is dropped
+            pendingText = null;
+            waitMillis = lastEditAt + minIntervalMillis - System.currentTimeMillis();
+        } finally {
+            lock.unlock();
+        }
+
+        if (waitMillis > 0) {
+            try {
+                Thread.sleep(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        boolean edited;
+        lock.lock();
+        try {
+            edited = edit(text, keyboard);
+        } finally {
+            lock.unlock();
+        }
+
+        if (!edited) {
+            SendMessage message = new SendMessage();
+            message.setChatId(chatId);
+            message.setText(text);
+            message.setParseMode("Markdown");
+            message.setReplyMarkup(keyboard);
+            sender.execute(message);
+        }
+    }
+
+    private void flushAfter(long waitMillis) {
+        try {
+            Thread.sleep(waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (completed || pendingText == null) return;
+            String text = pendingText;
+            pendingText = null;
+            edit(text, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns false if telegram refused the edit
+    private boolean edit(String text, InlineKeyboardMarkup keyboard) {
+        if (text.equals(lastText) && keyboard == null) return true; // telegram rejects edits that change nothing
+
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId);
+        edit.setMessageId(messageId);
+        edit.setText(text);
+        edit.setParseMode("Markdown");
+        edit.setReplyMarkup(keyboard);
+
+        try {
+            sender.execute(edit);
+            lastText = text;
+            return true;
+        } catch (TelegramApiException e) {
+            log.debug("Could not edit message {} in chat {}: {}", messageId, chatId, e.getMessage());
+            return false;
+        } finally {
+            lastEditAt = System.currentTimeMillis();
+        }
+    }
+}
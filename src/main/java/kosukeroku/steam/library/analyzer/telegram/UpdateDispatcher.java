@@ -0,0 +1,86 @@
+package kosukeroku.steam.library.analyzer.telegram;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// runs updates concurrently on virtual threads, so a heavy analysis in one chat doesn't delay the others.
+// updates of the same chat are chained and still processed one after another. the number of updates waiting
+// or running is bounded, updates over it are rejected, so a burst can't grow the heap without limit
+@Slf4j
+@Component
+public class UpdateDispatcher {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // caps how many updates are processed at once across all chats
+    private final Semaphore permits;
+
+    // last queued update of every chat with updates in progress
+    private final Map<Long, CompletableFuture<Void>> chatQueues = new ConcurrentHashMap<>();
+
+    // updates accepted but not finished yet, across all chats
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    private final int maxPendingUpdates;
+
+    public UpdateDispatcher(@Value("${app.bot.max-concurrent-updates:64}") int maxConcurrentUpdates,
+                            @Value("${app.bot.max-pending-updates:1000}") int maxPendingUpdates) {
+        this.permits = new Semaphore(maxConcurrentUpdates);
+        this.maxPendingUpdates = maxPendingUpdates;
+    }
+
+    // returns false without queueing the task if too many updates are already waiting or running
+    public boolean dispatch(Long chatId, Runnable task) {
+        if (pendingUpdates.incrementAndGet() > maxPendingUpdates) {
+            pendingUpdates.decrementAndGet();
+            return false;
+        }
+
+        CompletableFuture<Void> queued = chatQueues.compute(chatId, (id, tail) ->
+                (tail == null ? CompletableFuture.<Void>completedFuture(null) : tail)
+                        .handleAsync((result, error) -> {
+                            try {
+                                runWithPermit(chatId, task);
+                            } finally {
+                                pendingUpdates.decrementAndGet();
+                            }
+                            return null;
+                        }, executor));
+
+        // dropping the chat's queue once its last update is done
+        queued.whenComplete((result, error) -> chatQueues.remove(chatId, queued));
+        return true;
+    }
+
+    public int getPendingUpdates() {
+        return pendingUpdates.get();
+    }
+
+    private void runWithPermit(Long chatId, Runnable task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting to process update for chat {}", chatId);
+            return;
+        }
+
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.error("Error processing update for chat {}: {}", chatId, e.getMessage(), e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,46 @@
+package kosukeroku.steam.library.analyzer.telegram;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+// receives updates in webhook mode; they are handed to the update dispatcher and answered right away,
+// so telegram never waits for an analysis to finish. when the dispatcher is full the update is answered with 503,
+// and telegram delivers it again later
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "webhook")
+public class WebhookController {
+
+    private static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final LibraryAnalyzerBot bot;
+
+    @Value("${telegram.bot.webhook.secret-token:}")
+    private String secretToken;
+
+    @PostMapping("${telegram.bot.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(@RequestHeader(value = SECRET_TOKEN_HEADER, required = false) String token,
+                                         @RequestBody Update update) {
+        // telegram sends the token we registered the webhook with, anything else didn't come from telegram
+        if (!secretToken.isEmpty() && !secretToken.equals(token)) {
+            log.warn("Rejected webhook update with a wrong secret token");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        if (!bot.offerUpdate(update)) {
+            log.warn("Update dispatcher is full, asking telegram to redeliver the update later");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+}
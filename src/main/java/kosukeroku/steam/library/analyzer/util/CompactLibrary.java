@@ -0,0 +1,210 @@
+package kosukeroku.steam.library.analyzer.util;
+
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import kosukeroku.steam.library.analyzer.modelDTO.SteamGame;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+// columnar game library: parallel primitive arrays sorted by appId, with names kept in the shared dictionary.
+// a game takes 12 bytes here instead of a boxed record with its own name and icon strings, which matters
+// when a friends view holds hundreds of libraries at once. games are addressed by their index in the arrays.
+// the library also keeps its set of games as a compressed bitmap over dense indices of the dictionary,
+// so overlaps of two libraries are a bitmap AND instead of a walk over both
+public final class CompactLibrary {
+
+    private final int[] appIds; // ascending
+    private final int[] playtimes; // minutes
+    private final int[] recentPlaytimes; // minutes in the last 2 weeks, 0 if not played
+    private final RoaringBitmap gameSet; // dense indices of the games
+    private final GameNameDictionary names;
+
+    private CompactLibrary(int[] appIds, int[] playtimes, int[] recentPlaytimes, RoaringBitmap gameSet, GameNameDictionary names) {
+        this.appIds = appIds;
+        this.playtimes = playtimes;
+        this.recentPlaytimes = recentPlaytimes;
+        this.gameSet = gameSet;
+        this.names = names;
+    }
+
+    // names of the games are added to the dictionary
+    public static CompactLibrary of(List<SteamGame> games, GameNameDictionary names) {
+        Builder builder = builder(names);
+        for (SteamGame game : games) {
+            builder.add(game.appId().intValue(), game.name(),
+                    game.playtime() != null ? game.playtime() : 0,
+                    game.playtime_2weeks() != null ? game.playtime_2weeks() : 0);
+        }
+        return builder.build();
+    }
+
+    // collects games one at a time (e.g. while a response is being parsed) without materializing them as records
+    public static Builder builder(GameNameDictionary names) {
+        return new Builder(names);
+    }
+
+    public int size() {
+        return appIds.length;
+    }
+
+    public int appId(int index) {
+        return appIds[index];
+    }
+
+    public int playtime(int index) {
+        return playtimes[index];
+    }
+
+    public int recentPlaytime(int index) {
+        return recentPlaytimes[index];
+    }
+
+    // null if the name is unknown
+    public String name(int index) {
+        return names.get(appIds[index]);
+    }
+
+    public long totalPlaytime() {
+        long total = 0;
+        for (int playtime : playtimes) {
+            total += playtime;
+        }
+        return total;
+    }
+
+    public int playedGames() {
+        int played = 0;
+        for (int playtime : playtimes) {
+            if (playtime > 0) played++;
+        }
+        return played;
+    }
+
+    // indices of games played in the last 2 weeks
+    public int[] recentlyPlayed() {
+        int[] indices = new int[appIds.length];
+        int count = 0;
+        for (int i = 0; i < recentPlaytimes.length; i++) {
+            if (recentPlaytimes[i] > 0) indices[count++] = i;
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    public boolean containsAppId(int appId) {
+        return Arrays.binarySearch(appIds, appId) >= 0;
+    }
+
+    // number of games both libraries have, the AND-cardinality of their bitmaps
+    public int sharedCount(CompactLibrary other) {
+        return RoaringBitmap.andCardinality(gameSet, other.gameSet);
+    }
+
+    // indices of at most k games with the most playtime, most played first; include is only asked about
+    // games that would make it into the top, so it may be costly (e.g. a name lookup)
+    public int[] topByPlaytime(int k, IntPredicate include) {
+        int[] top = new int[Math.min(k, appIds.length)];
+        int size = 0;
+
+        // partial selection into a small array kept sorted by playtime, fine for the handful of games we show
+        for (int index = 0; index < appIds.length; index++) {
+            int playtime = playtimes[index];
+
+            if (size == top.length && (size == 0 || playtime <= playtimes[top[size - 1]])) continue;
+            if (!include.test(index)) continue;
+
+            int position = size < top.length ? size++ : size - 1;
+            while (position > 0 && playtimes[top[position - 1]] < playtime) {
+                top[position] = top[position - 1];
+                position--;
+            }
+            top[position] = index;
+        }
+        return Arrays.copyOf(top, size);
+    }
+
+    // all indices, most played first
+    public int[] byPlaytime() {
+        // sorting packed (inverted playtime, index) pairs keeps it to one primitive sort
+        long[] packed = new long[appIds.length];
+        for (int i = 0; i < appIds.length; i++) {
+            packed[i] = ((long) (Integer.MAX_VALUE - playtimes[i]) << 32) | i;
+        }
+        Arrays.sort(packed);
+
+        int[] indices = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            indices[i] = (int) packed[i];
+        }
+        return indices;
+    }
+
+    public SteamGame toGame(int index) {
+        return new SteamGame((long) appIds[index], name(index), playtimes[index],
+                recentPlaytimes[index] > 0 ? recentPlaytimes[index] : null, null);
+    }
+
+    public List<SteamGame> toGames(int[] indices) {
+        List<SteamGame> games = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            games.add(toGame(index));
+        }
+        return games;
+    }
+
+    public static final class Builder {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final GameNameDictionary names;
+        private int[] appIds = new int[INITIAL_CAPACITY];
+        private int[] playtimes = new int[INITIAL_CAPACITY];
+        private int[] recentPlaytimes = new int[INITIAL_CAPACITY];
+        private int size;
+
+        private Builder(GameNameDictionary names) {
+            this.names = names;
+        }
+
+        public Builder add(int appId, String name, int playtime, int recentPlaytime) {
+            if (size == appIds.length) {
+                appIds = Arrays.copyOf(appIds, size * 2);
+                playtimes = Arrays.copyOf(playtimes, size * 2);
+                recentPlaytimes = Arrays.copyOf(recentPlaytimes, size * 2);
+            }
+            appIds[size] = appId;
+            playtimes[size] = playtime;
+            recentPlaytimes[size] = recentPlaytime;
+            size++;
+            names.put(appId, name);
+            return this;
+        }
+
+        public CompactLibrary build() {
+            // sorting packed (appId, position) pairs, so the three columns are reordered with one primitive sort
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = ((long) appIds[i] << 32) | i;
+            }
+            Arrays.sort(packed);
+
+            int[] sortedAppIds = new int[size];
+            int[] sortedPlaytimes = new int[size];
+            int[] sortedRecentPlaytimes = new int[size];
+            int[] denseIndices = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                int position = (int) packed[i];
+                sortedAppIds[i] = appIds[position];
+                sortedPlaytimes[i] = playtimes[position];
+                sortedRecentPlaytimes[i] = recentPlaytimes[position];
+                denseIndices[i] = names.denseIndex(sortedAppIds[i]);
+            }
+
+            RoaringBitmap gameSet = RoaringBitmap.bitmapOfUnordered(denseIndices);
+            gameSet.runOptimize();
+            return new CompactLibrary(sortedAppIds, sortedPlaytimes, sortedRecentPlaytimes, gameSet, names);
+        }
+    }
+}
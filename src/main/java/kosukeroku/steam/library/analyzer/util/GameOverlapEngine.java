@@ -0,0 +1,36 @@
+package kosukeroku.steam.library.analyzer.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// compares one user's library with many others (e.g. every friend's): shared counts are the AND-cardinality
+// of the libraries' bitmaps, and sample shared games come from walking the user's games in playtime order,
+// which is sorted once per user instead of once per friend. the walk stops after a few hits,
+// since the most played games are usually the shared ones
+public class GameOverlapEngine {
+
+    private final CompactLibrary library;
+    private final int[] byPlaytime; // user's indices, most played first
+
+    public GameOverlapEngine(CompactLibrary library) {
+        this.library = library;
+        this.byPlaytime = library.byPlaytime();
+    }
+
+    public int sharedCount(CompactLibrary other) {
+        return library.sharedCount(other);
+    }
+
+    // names of at most k shared games the user played most, games with unknown names are skipped
+    public List<String> topShared(CompactLibrary other, int k) {
+        List<String> names = new ArrayList<>(k);
+        for (int i = 0; i < byPlaytime.length && names.size() < k; i++) {
+            int index = byPlaytime[i];
+            if (!other.containsAppId(library.appId(index))) continue;
+
+            String name = library.name(index);
+            if (name != null) names.add(name);
+        }
+        return names;
+    }
+}
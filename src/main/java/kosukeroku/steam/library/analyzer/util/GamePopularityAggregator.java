@@ -0,0 +1,113 @@
+package kosukeroku.steam.library.analyzer.util;
+
+// thread-safe aggregator of friends' libraries keyed by primitive appId: counts how many friends own every game
+// and sums their playtime. it is split into independently locked stripes, so libraries delivered concurrently
+// rarely contend, and every stripe is an open-addressing table over primitive arrays, so adding a game
+// allocates nothing (only the table growth does). names are not kept, they are looked up for the top games only
+public class GamePopularityAggregator {
+
+    private static final int STRIPES = 16; // must be a power of two
+    private static final int INITIAL_STRIPE_CAPACITY = 256; // must be a power of two
+
+    // receives aggregated stats of one game
+    @FunctionalInterface
+    public interface GameConsumer {
+        void accept(long appId, int friendCount, long totalPlaytimeMinutes);
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public GamePopularityAggregator() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // adds one friend's library; each game of the library counts as one more friend owning it
+    public void addLibrary(CompactLibrary library) {
+        for (int i = 0; i < library.size(); i++) {
+            long appId = library.appId(i);
+            Stripe stripe = stripes[(int) (mix(appId) >>> 32) & (STRIPES - 1)];
+            synchronized (stripe) {
+                stripe.add(appId, library.playtime(i));
+            }
+        }
+    }
+
+    // iterates over all aggregated games, must not be called while libraries are still being added
+    public void forEach(GameConsumer consumer) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.forEach(consumer);
+            }
+        }
+    }
+
+    // murmur3 finalizer, spreads sequential appIds over stripes and slots
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Stripe {
+        private long[] appIds = new long[INITIAL_STRIPE_CAPACITY]; // 0 marks an empty slot, steam appIds are positive
+        private int[] friendCounts = new int[INITIAL_STRIPE_CAPACITY];
+        private long[] playtimes = new long[INITIAL_STRIPE_CAPACITY];
+        private int size;
+
+        void add(long appId, int playtime) {
+            int slot = findSlot(appIds, appId);
+            if (appIds[slot] == 0) {
+                appIds[slot] = appId;
+                if (++size * 2 > appIds.length) {
+                    grow();
+                    slot = findSlot(appIds, appId);
+                }
+            }
+            friendCounts[slot]++;
+            playtimes[slot] += playtime;
+        }
+
+        void forEach(GameConsumer consumer) {
+            for (int i = 0; i < appIds.length; i++) {
+                if (appIds[i] != 0) {
+                    consumer.accept(appIds[i], friendCounts[i], playtimes[i]);
+                }
+            }
+        }
+
+        // linear probing: returns the slot holding appId or the empty slot where it belongs
+        private static int findSlot(long[] table, long appId) {
+            int mask = table.length - 1;
+            int slot = (int) mix(appId) & mask;
+            while (table[slot] != 0 && table[slot] != appId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldAppIds = appIds;
+            int[] oldFriendCounts = friendCounts;
+            long[] oldPlaytimes = playtimes;
+
+            int capacity = oldAppIds.length * 2;
+            appIds = new long[capacity];
+            friendCounts = new int[capacity];
+            playtimes = new long[capacity];
+
+            for (int i = 0; i < oldAppIds.length; i++) {
+                if (oldAppIds[i] != 0) {
+                    int slot = findSlot(appIds, oldAppIds[i]);
+                    appIds[slot] = oldAppIds[i];
+                    friendCounts[slot] = oldFriendCounts[i];
+                    playtimes[slot] = oldPlaytimes[i];
+                }
+            }
+        }
+    }
+}
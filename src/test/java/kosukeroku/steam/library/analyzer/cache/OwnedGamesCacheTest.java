@@ -0,0 +1,139 @@
+package kosukeroku.steam.library.analyzer.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kosukeroku.steam.library.analyzer.client.SteamApiClient;
+import kosukeroku.steam.library.analyzer.client.SteamEndpoint;
+import kosukeroku.steam.library.analyzer.util.CompactLibrary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class OwnedGamesCacheTest {
+
+    private static final String STEAM_ID = "76561197960287930";
+    private static final String KEY = "steam:owned_games:" + STEAM_ID;
+    private static final String LOCK_KEY = "steam:owned_games:lock:" + STEAM_ID;
+    private static final String CACHED_JSON = "{\"response\":{\"game_count\":1,\"games\":[{\"appid\":570,\"name\":\"Dota 2\",\"playtime_forever\":10}]}}";
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> values = mock(ValueOperations.class);
+    private final SteamApiClient steamApiClient = mock(SteamApiClient.class);
+    private final GameNameDictionary names = new GameNameDictionary();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private OwnedGamesCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(steamApiClient.maxCallDuration(SteamEndpoint.GET_OWNED_GAMES)).thenReturn(Duration.ofSeconds(1));
+
+        cache = new OwnedGamesCache(redisTemplate, new ObjectMapper(), new SimpleMeterRegistry(), names, steamApiClient);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cache, "lockMarginSeconds", 10L);
+    }
+
+    @Test
+    void lockHolderLoadsCachesAndReleasesItsOwnLock() {
+        when(values.setIfAbsent(eq(LOCK_KEY), anyString(), any(Duration.class))).thenReturn(true);
+
+        CompactLibrary library = cache.getOrLoad(STEAM_ID, true, loader()).block();
+
+        assertThat(library).isNotNull();
+        assertThat(library.appId(0)).isEqualTo(440);
+        assertThat(loads).hasValue(1);
+        verify(values).set(eq(KEY), contains("\"appid\":440"), eq(Duration.ofMinutes(60)));
+
+        // the lock lasts as long as the call may take plus the margin, and is released with the token it was taken with
+        ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+        verify(values).setIfAbsent(eq(LOCK_KEY), token.capture(), eq(Duration.ofSeconds(11)));
+        verify(redisTemplate, timeout(1000)).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), eq(token.getValue()));
+        verify(redisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    void everyLoadTakesTheLockWithItsOwnToken() {
+        when(values.setIfAbsent(eq(LOCK_KEY), anyString(), any(Duration.class))).thenReturn(true);
+
+        cache.getOrLoad(STEAM_ID, true, loader()).block();
+        cache.getOrLoad(STEAM_ID, true, loader()).block();
+
+        ArgumentCaptor<String> tokens = ArgumentCaptor.forClass(String.class);
+        verify(values, times(2)).setIfAbsent(eq(LOCK_KEY), tokens.capture(), any(Duration.class));
+        assertThat(tokens.getAllValues().get(0)).isNotEqualTo(tokens.getAllValues().get(1));
+    }
+
+    @Test
+    void lockIsReleasedWhenTheLoadFails() {
+        when(values.setIfAbsent(eq(LOCK_KEY), anyString(), any(Duration.class))).thenReturn(true);
+
+        Mono<CompactLibrary> failing = Mono.error(new IllegalStateException("steam is down"));
+        assertThat(cache.getOrLoad(STEAM_ID, true, failing).onErrorResume(e -> Mono.empty()).block()).isNull();
+
+        ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+        verify(values).setIfAbsent(eq(LOCK_KEY), token.capture(), any(Duration.class));
+        verify(redisTemplate, timeout(1000)).execute(any(RedisScript.class), eq(List.of(LOCK_KEY)), eq(token.getValue()));
+        verify(values, never()).set(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void waiterReadsWhatTheLockHolderCached() {
+        when(values.get(KEY)).thenReturn(null, null, CACHED_JSON);
+        when(values.setIfAbsent(eq(LOCK_KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(redisTemplate.hasKey(LOCK_KEY)).thenReturn(true);
+
+        CompactLibrary library = cache.getOrLoad(STEAM_ID, true, loader()).block();
+
+        assertThat(library).isNotNull();
+        assertThat(library.appId(0)).isEqualTo(570);
+        assertThat(loads).hasValue(0);
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any());
+    }
+
+    @Test
+    void waiterLoadsItselfWhenTheHolderLeftNothing() {
+        when(values.setIfAbsent(eq(LOCK_KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(redisTemplate.hasKey(LOCK_KEY)).thenReturn(false);
+
+        CompactLibrary library = cache.getOrLoad(STEAM_ID, true, loader()).block();
+
+        assertThat(library).isNotNull();
+        assertThat(loads).hasValue(1);
+        // the waiter never held the lock, so it doesn't release it
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any());
+    }
+
+    @Test
+    void namelessLibrariesUseTheirOwnKeysAndLock() {
+        String namelessLockKey = "steam:owned_games:lock:nameless:" + STEAM_ID;
+        when(values.multiGet(anyList())).thenReturn(Arrays.<String>asList(null, null));
+        when(values.setIfAbsent(eq(namelessLockKey), anyString(), any(Duration.class))).thenReturn(true);
+
+        cache.getOrLoad(STEAM_ID, false, loader()).block();
+
+        verify(values).set(eq("steam:owned_games:nameless:" + STEAM_ID), anyString(), any(Duration.class));
+        verify(values, never()).setIfAbsent(eq(LOCK_KEY), anyString(), any(Duration.class));
+    }
+
+    private Mono<CompactLibrary> loader() {
+        return Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return CompactLibrary.builder(names).add(440, "Team Fortress 2", 300, 0).build();
+        });
+    }
+}
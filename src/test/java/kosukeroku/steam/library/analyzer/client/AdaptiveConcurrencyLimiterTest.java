@@ -0,0 +1,142 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void callsOverTheLimitWaitInTheQueue() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 10);
+
+        limiter.run(Mono.never()).subscribe();
+        limiter.run(Mono.never()).subscribe();
+        AtomicBoolean thirdStarted = new AtomicBoolean();
+        limiter.run(Mono.fromRunnable(() -> thirdStarted.set(true))).subscribe();
+
+        assertThat(limiter.getState().inFlight()).isEqualTo(2);
+        assertThat(limiter.getState().queued()).isEqualTo(1);
+        assertThat(thirdStarted).isFalse();
+    }
+
+    @Test
+    void finishedCallStartsAWaitingOne() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1);
+        Sinks.One<String> first = Sinks.one();
+
+        limiter.run(first.asMono()).subscribe();
+        AtomicBoolean secondStarted = new AtomicBoolean();
+        limiter.run(Mono.<String>never().doOnSubscribe(subscription -> secondStarted.set(true))).subscribe();
+        assertThat(secondStarted).isFalse();
+
+        first.tryEmitValue("done");
+
+        assertThat(secondStarted).isTrue();
+        assertThat(limiter.getState().inFlight()).isEqualTo(1);
+        assertThat(limiter.getState().queued()).isZero();
+    }
+
+    @Test
+    void cancelledWaiterLeavesTheQueue() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1);
+
+        limiter.run(Mono.never()).subscribe();
+        Disposable waiting = limiter.run(Mono.never()).subscribe();
+        waiting.dispose();
+
+        assertThat(limiter.getState().inFlight()).isEqualTo(1);
+        assertThat(limiter.getState().queued()).isZero();
+    }
+
+    @Test
+    void cancelledCallReleasesItsSlot() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1);
+
+        Disposable running = limiter.run(Mono.never()).subscribe();
+        running.dispose();
+
+        assertThat(limiter.getState().inFlight()).isZero();
+    }
+
+    @Test
+    void waiterCancelledWhileBeingGrantedDoesNotLeakTheSlot() throws Exception {
+        // the waiter is cancelled concurrently with the release that grants it the slot; whichever wins,
+        // the slot must come back once everything is done
+        for (int i = 0; i < 2_000; i++) {
+            AdaptiveConcurrencyLimiter limiter = limiter(1, 1);
+            Sinks.One<String> running = Sinks.one();
+
+            limiter.run(running.asMono()).subscribe();
+            Disposable waiting = limiter.run(Mono.just("waiter")).subscribe();
+
+            CountDownLatch start = new CountDownLatch(1);
+            Thread canceller = new Thread(() -> {
+                awaitQuietly(start);
+                waiting.dispose();
+            });
+            canceller.start();
+            start.countDown();
+            running.tryEmitValue("done");
+            canceller.join();
+
+            assertThat(limiter.getState().inFlight()).as("slots in use after round %d", i).isZero();
+            assertThat(limiter.getState().queued()).isZero();
+        }
+    }
+
+    @Test
+    void overloadShrinksTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 10);
+
+        limiter.run(Mono.error(status(429))).subscribe(null, e -> {});
+
+        assertThat(limiter.getState().limit()).isEqualTo(5);
+    }
+
+    @Test
+    void clientErrorsAreNotLatencySamples() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 10);
+
+        limiter.run(Mono.error(status(404))).subscribe(null, e -> {});
+        limiter.run(Mono.error(status(401))).subscribe(null, e -> {});
+
+        assertThat(limiter.getState().noLoadLatencyMillis()).isZero(); // still unknown
+        assertThat(limiter.getState().limit()).isEqualTo(10);
+    }
+
+    @Test
+    void disabledLatencySignalIgnoresSuccessLatency() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("GetOwnedGames", 10, 1, 10, 0.5, 2.0, false);
+
+        limiter.run(Mono.just("small library")).block();
+
+        assertThat(limiter.getState().noLoadLatencyMillis()).isZero();
+        assertThat(limiter.getState().latencyMillis()).isZero();
+    }
+
+    private static AdaptiveConcurrencyLimiter limiter(int initialLimit, int maxLimit) {
+        return new AdaptiveConcurrencyLimiter("test", initialLimit, 1, maxLimit, 0.5, 2.0, true);
+    }
+
+    private static WebClientResponseException status(int status) {
+        return WebClientResponseException.create(status, "status " + status, HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
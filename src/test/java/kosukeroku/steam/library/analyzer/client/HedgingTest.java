@@ -0,0 +1,120 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgingTest {
+
+    private static final Duration DELAY = Duration.ofMillis(20);
+
+    private final AtomicInteger copiesAsked = new AtomicInteger();
+    private final BooleanSupplier sendCopy = () -> {
+        copiesAsked.incrementAndGet();
+        return true;
+    };
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @Test
+    void queuedCallIsNotHedged() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(1);
+        Sinks.One<String> blocker = Sinks.one();
+        limiter.run(blocker.asMono()).subscribe();
+
+        Hedging.hedged(limiter, counted(Mono.never()), DELAY, sendCopy).subscribe();
+        Thread.sleep(DELAY.toMillis() * 10);
+
+        assertThat(limiter.getState().queued()).isEqualTo(1);
+        assertThat(copiesAsked).hasValue(0);
+        assertThat(sent).hasValue(0);
+
+        // once the original gets its slot the delay starts, and the copy follows
+        blocker.tryEmitValue("done");
+        awaitValue(copiesAsked, 1);
+        assertThat(sent).hasValue(1); // the copy itself waits for a slot of its own
+    }
+
+    @Test
+    void fastCallIsNotHedged() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+
+        assertThat(Hedging.hedged(limiter, counted(Mono.just("fast")), DELAY, sendCopy).block()).isEqualTo("fast");
+        Thread.sleep(DELAY.toMillis() * 5);
+
+        assertThat(sent).hasValue(1);
+        assertThat(copiesAsked).hasValue(0);
+        assertThat(limiter.getState().inFlight()).isZero();
+    }
+
+    @Test
+    void copyIsNotSentOverBudget() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+
+        Hedging.hedged(limiter, counted(Mono.never()), DELAY, () -> {
+            copiesAsked.incrementAndGet();
+            return false;
+        }).subscribe();
+        awaitValue(copiesAsked, 1);
+
+        assertThat(sent).hasValue(1);
+    }
+
+    @Test
+    void copyRescuesAFailingOriginal() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+        Sinks.One<String> original = Sinks.one();
+        Sinks.One<String> copy = Sinks.one();
+        Mono<String> call = Mono.defer(() -> sent.incrementAndGet() == 1 ? original.asMono() : copy.asMono());
+
+        AtomicReference<String> result = new AtomicReference<>();
+        Hedging.hedged(limiter, call, DELAY, sendCopy).subscribe(result::set);
+        awaitValue(sent, 2);
+
+        original.tryEmitError(new IllegalStateException("original failed"));
+        assertThat(result.get()).isNull();
+
+        copy.tryEmitValue("copy");
+        assertThat(result).hasValue("copy");
+        assertThat(limiter.getState().inFlight()).isZero();
+    }
+
+    @Test
+    void failsWhenBothAttemptsFail() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+        Sinks.One<String> original = Sinks.one();
+        Sinks.One<String> copy = Sinks.one();
+        Mono<String> call = Mono.defer(() -> sent.incrementAndGet() == 1 ? original.asMono() : copy.asMono());
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Hedging.hedged(limiter, call, DELAY, sendCopy).subscribe(null, error::set);
+        awaitValue(sent, 2);
+
+        original.tryEmitError(new IllegalStateException("original failed"));
+        copy.tryEmitError(new IllegalStateException("copy failed"));
+
+        assertThat(error.get()).hasMessage("copy failed");
+    }
+
+    private <T> Mono<T> counted(Mono<T> call) {
+        return call.doOnSubscribe(subscription -> sent.incrementAndGet());
+    }
+
+    private static AdaptiveConcurrencyLimiter limiter(int limit) {
+        return new AdaptiveConcurrencyLimiter("test", limit, 1, limit, 0.5, 2.0, true);
+    }
+
+    private static void awaitValue(AtomicInteger counter, int value) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (counter.get() < value && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(counter).hasValue(value);
+    }
+}
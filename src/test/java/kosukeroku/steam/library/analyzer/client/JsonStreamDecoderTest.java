@@ -0,0 +1,114 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import kosukeroku.steam.library.analyzer.modelDTO.SteamGame;
+import kosukeroku.steam.library.analyzer.responseDTO.PlayerAchievements;
+import kosukeroku.steam.library.analyzer.responseDTO.PlayerAchievements.UnlockedAchievement;
+import kosukeroku.steam.library.analyzer.util.CompactLibrary;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the readers are fed the same documents cut into chunks of every size, so tokens, multi-byte characters
+// and names split between chunks are covered
+class JsonStreamDecoderTest {
+
+    private static final String OWNED_GAMES = """
+            {"response":{"game_count":3,"games":[
+              {"appid":570,"name":"Dota 2","playtime_forever":1200,"img_icon_url":"0bbb630d","playtime_2weeks":30},
+              {"appid":10,"name":"Café ☕ Simulator","playtime_forever":0,"has_community_visible_stats":true},
+              {"appid":440,"name":"Team Fortress 2","playtime_forever":300,"content_descriptorids":[2,5]}
+            ]}}""";
+
+    private static final String PLAYER_ACHIEVEMENTS = """
+            {"playerstats":{"steamID":"76561197960287930","gameName":"Portal 2","achievements":[
+              {"apiname":"ACH_1","achieved":1,"unlocktime":100,"name":"First","description":"skipped"},
+              {"apiname":"ACH_2","achieved":0,"unlocktime":0},
+              {"apiname":"ACH_3","achieved":1,"unlocktime":300,"name":"Thé ☕ third"},
+              {"apiname":"ACH_4","achieved":1,"unlocktime":200}
+            ],"success":true}}""";
+
+    private final GameNameDictionary names = new GameNameDictionary();
+
+    @Test
+    void ownedGamesAreReadTheSameWhateverTheChunks() {
+        for (int chunkSize = 1; chunkSize <= OWNED_GAMES.length(); chunkSize++) {
+            CompactLibrary library = JsonStreamDecoder.decode(chunked(OWNED_GAMES, chunkSize), () -> new OwnedGamesReader(names)).block();
+
+            assertThat(library).as("library read in chunks of %d bytes", chunkSize).isNotNull();
+            assertThat(library.toGames(new int[]{0, 1, 2})).as("games read in chunks of %d bytes", chunkSize).containsExactly(
+                    new SteamGame(10L, "Café ☕ Simulator", 0, null, null),
+                    new SteamGame(440L, "Team Fortress 2", 300, null, null),
+                    new SteamGame(570L, "Dota 2", 1200, 30, null));
+        }
+    }
+
+    @Test
+    void libraryWithoutGamesListIsEmpty() {
+        assertThat(JsonStreamDecoder.decode(chunked("{\"response\":{}}", 4), () -> new OwnedGamesReader(names)).blockOptional())
+                .isEmpty();
+    }
+
+    @Test
+    void emptyGamesListIsAnEmptyLibrary() {
+        CompactLibrary library = JsonStreamDecoder.decode(chunked("{\"response\":{\"game_count\":0,\"games\":[]}}", 5),
+                () -> new OwnedGamesReader(names)).block();
+
+        assertThat(library).isNotNull();
+        assertThat(library.size()).isZero();
+    }
+
+    @Test
+    void achievementsAreReadTheSameWhateverTheChunks() {
+        PlayerAchievements expected = new PlayerAchievements(true, 4, 3, List.of(
+                new UnlockedAchievement("ACH_3", "Thé ☕ third", 300),
+                new UnlockedAchievement("ACH_4", null, 200)));
+
+        for (int chunkSize = 1; chunkSize <= PLAYER_ACHIEVEMENTS.length(); chunkSize++) {
+            PlayerAchievements achievements = JsonStreamDecoder.decode(chunked(PLAYER_ACHIEVEMENTS, chunkSize),
+                    () -> new PlayerAchievementsReader(2)).block();
+
+            assertThat(achievements).as("achievements read in chunks of %d bytes", chunkSize).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void gameWithoutStatsHasNoAchievements() {
+        String response = "{\"playerstats\":{\"error\":\"Requested app has no stats\",\"success\":false}}";
+
+        assertThat(JsonStreamDecoder.decode(chunked(response, 7), () -> new PlayerAchievementsReader(5)).block())
+                .isEqualTo(PlayerAchievements.NONE);
+    }
+
+    @Test
+    void inMemoryDocumentIsReadLikeAStream() throws Exception {
+        try (JsonParser parser = new JsonFactory().createParser(PLAYER_ACHIEVEMENTS)) {
+            PlayerAchievements achievements = JsonStreamDecoder.read(parser, new PlayerAchievementsReader(1));
+
+            assertThat(achievements.totalAchievements()).isEqualTo(4);
+            assertThat(achievements.completedAchievements()).isEqualTo(3);
+            assertThat(achievements.recentUnlocks()).containsExactly(new UnlockedAchievement("ACH_3", "Thé ☕ third", 300));
+        }
+    }
+
+    private static Flux<DataBuffer> chunked(String json, int chunkSize) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return Flux.defer(() -> {
+            List<DataBuffer> chunks = new ArrayList<>();
+            for (int i = 0; i < bytes.length; i += chunkSize) {
+                chunks.add(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(bytes, i, Math.min(i + chunkSize, bytes.length))));
+            }
+            return Flux.fromIterable(chunks);
+        });
+    }
+}
@@ -0,0 +1,50 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyTrackerTest {
+
+    private final LatencyTracker tracker = new LatencyTracker();
+
+    @Test
+    void noPercentileUntilEnoughSamples() {
+        for (int latency = 1; latency < 50; latency++) {
+            tracker.record(latency);
+        }
+        assertThat(tracker.p95Nanos()).isEqualTo(-1);
+
+        tracker.record(50);
+        assertThat(tracker.p95Nanos()).isEqualTo(48);
+    }
+
+    @Test
+    void percentileIsRecomputedEveryFewSamples() {
+        for (int latency = 1; latency <= 50; latency++) {
+            tracker.record(latency);
+        }
+
+        for (int i = 0; i < 31; i++) {
+            tracker.record(1_000_000);
+        }
+        assertThat(tracker.p95Nanos()).isEqualTo(48); // stale until the next recompute
+
+        tracker.record(1_000_000);
+        assertThat(tracker.p95Nanos()).isEqualTo(1_000_000);
+    }
+
+    @Test
+    void oldSamplesLeaveTheWindow() {
+        for (int i = 0; i < 256; i++) {
+            tracker.record(1_000_000);
+        }
+        assertThat(tracker.p95Nanos()).isEqualTo(1_000_000);
+
+        // a full window of fast calls pushes out every slow one, seen at the next recompute
+        for (int i = 0; i < 256 + 32; i++) {
+            tracker.record(10);
+        }
+        assertThat(tracker.p95Nanos()).isEqualTo(10);
+    }
+}
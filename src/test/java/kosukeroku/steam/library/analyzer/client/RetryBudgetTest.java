@@ -0,0 +1,86 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// without a refill per second the budget only moves with requests, so the accounting is deterministic;
+// the refill is checked against a clock the test moves
+class RetryBudgetTest {
+
+    @Test
+    void startsWithOneExtraAttempt() {
+        RetryBudget budget = new RetryBudget(0.25, 0);
+
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isFalse();
+        assertThat(budget.getState()).isEqualTo(new RetryBudget.State(0, 1, 1));
+    }
+
+    @Test
+    void requestsEarnAShareOfAnExtraAttempt() {
+        RetryBudget budget = new RetryBudget(0.25, 0);
+        budget.tryAcquire();
+
+        for (int i = 0; i < 3; i++) {
+            budget.onRequest();
+        }
+        assertThat(budget.tryAcquire()).isFalse();
+
+        budget.onRequest();
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.getState()).isEqualTo(new RetryBudget.State(0, 2, 1));
+    }
+
+    @Test
+    void balanceIsCapped() {
+        RetryBudget budget = new RetryBudget(0.25, 0);
+
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+
+        assertThat(budget.getState().balance()).isEqualTo(1);
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void extraAttemptsStayWithinTheRatioUnderFailures() {
+        RetryBudget budget = new RetryBudget(0.25, 0);
+
+        // every request fails and asks for a retry
+        int granted = 0;
+        for (int i = 0; i < 1_000; i++) {
+            budget.onRequest();
+            if (budget.tryAcquire()) granted++;
+        }
+
+        assertThat(granted).isEqualTo(250); // a quarter of the requests, the first one spending the starting balance
+        assertThat(budget.getState().granted()).isEqualTo(granted);
+        assertThat(budget.getState().denied()).isEqualTo(1_000 - granted);
+    }
+
+    @Test
+    void refillsOverTimeUpToTenSeconds() {
+        AtomicLong nanoTime = new AtomicLong();
+        RetryBudget budget = new RetryBudget(0.1, 5, nanoTime::get);
+        assertThat(budget.getState().balance()).isEqualTo(50);
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(budget.tryAcquire()).isTrue();
+        }
+        assertThat(budget.tryAcquire()).isFalse();
+
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(budget.getState().balance()).isEqualTo(10);
+
+        // a long quiet period refills no more than ten seconds' worth
+        nanoTime.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        assertThat(budget.getState().balance()).isEqualTo(50);
+        assertThat(budget.getState()).isEqualTo(new RetryBudget.State(50, 50, 1));
+    }
+}
@@ -0,0 +1,78 @@
+package kosukeroku.steam.library.analyzer.client;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    @Test
+    void concurrentCallsWithTheSameKeyShareOneSubscription() {
+        Sinks.One<String> response = Sinks.one();
+        Mono<String> call = counted(response.asMono());
+
+        AtomicReference<String> first = new AtomicReference<>();
+        AtomicReference<String> second = new AtomicReference<>();
+        singleFlight.execute("key", call).subscribe(first::set);
+        singleFlight.execute("key", call).subscribe(second::set);
+
+        assertThat(singleFlight.getStats().inFlight()).isEqualTo(1);
+        response.tryEmitValue("value");
+
+        assertThat(subscriptions).hasValue(1);
+        assertThat(first).hasValue("value");
+        assertThat(second).hasValue("value");
+        assertThat(singleFlight.getStats()).isEqualTo(new SingleFlight.Stats(2, 1, 0));
+    }
+
+    @Test
+    void differentKeysAreNotShared() {
+        singleFlight.execute("a", counted(Mono.never())).subscribe();
+        singleFlight.execute("b", counted(Mono.never())).subscribe();
+
+        assertThat(subscriptions).hasValue(2);
+        assertThat(singleFlight.getStats()).isEqualTo(new SingleFlight.Stats(2, 0, 2));
+    }
+
+    @Test
+    void finishedCallIsNotReused() {
+        Mono<String> call = counted(Mono.just("value"));
+
+        assertThat(singleFlight.execute("key", call).block()).isEqualTo("value");
+        assertThat(singleFlight.execute("key", call).block()).isEqualTo("value");
+
+        assertThat(subscriptions).hasValue(2);
+        assertThat(singleFlight.getStats().inFlight()).isZero();
+    }
+
+    @Test
+    void failureIsSharedAndThenForgotten() {
+        Sinks.One<String> response = Sinks.one();
+        Mono<String> call = counted(response.asMono());
+
+        AtomicReference<Throwable> first = new AtomicReference<>();
+        AtomicReference<Throwable> second = new AtomicReference<>();
+        singleFlight.execute("key", call).subscribe(null, first::set);
+        singleFlight.execute("key", call).subscribe(null, second::set);
+        response.tryEmitError(new IllegalStateException("steam is down"));
+
+        assertThat(first.get()).hasMessage("steam is down");
+        assertThat(second.get()).isSameAs(first.get());
+        assertThat(singleFlight.getStats().inFlight()).isZero();
+
+        assertThat(singleFlight.execute("key", counted(Mono.just("recovered"))).block()).isEqualTo("recovered");
+        assertThat(subscriptions).hasValue(2);
+    }
+
+    private <T> Mono<T> counted(Mono<T> call) {
+        return call.doOnSubscribe(subscription -> subscriptions.incrementAndGet());
+    }
+}
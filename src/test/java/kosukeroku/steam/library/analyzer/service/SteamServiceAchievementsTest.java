@@ -0,0 +1,141 @@
+package kosukeroku.steam.library.analyzer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kosukeroku.steam.library.analyzer.cache.*;
+import kosukeroku.steam.library.analyzer.client.SteamApiClient;
+import kosukeroku.steam.library.analyzer.modelDTO.AchievementStats;
+import kosukeroku.steam.library.analyzer.modelDTO.GameAchievementSnapshot;
+import kosukeroku.steam.library.analyzer.responseDTO.PlayerAchievements;
+import kosukeroku.steam.library.analyzer.util.CompactLibrary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SteamServiceAchievementsTest {
+
+    private static final String STEAM_ID = "76561197960287930";
+
+    private final SteamApiClient steamApiClient = mock(SteamApiClient.class);
+    private final OwnedGamesCache ownedGamesCache = mock(OwnedGamesCache.class);
+    private final AchievementSnapshotStore snapshotStore = mock(AchievementSnapshotStore.class);
+    private final ProfileVisibilityCache visibilityCache = new ProfileVisibilityCache(15);
+    private final GameNameDictionary names = new GameNameDictionary();
+
+    private SteamService steamService;
+
+    @BeforeEach
+    void setUp() {
+        steamService = new SteamService(steamApiClient, ownedGamesCache, mock(PlayerNameCache.class), visibilityCache,
+                snapshotStore, mock(AchievementTotalsStore.class), names, mock(AppNameCatalog.class),
+                mock(AchievementSchemaCache.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(steamService, "friendsConcurrency", 8);
+        ReflectionTestUtils.setField(steamService, "achievementsConcurrency", 8);
+        ReflectionTestUtils.setField(steamService, "leaderboardInlineFriends", 5);
+        ReflectionTestUtils.setField(steamService, "language", "english");
+
+        // 10 didn't change since the snapshot, 20 was played since, 30 is too short to count, 40 is new
+        CompactLibrary library = CompactLibrary.builder(names)
+                .add(10, "Portal", 100, 0)
+                .add(20, "Half-Life", 200, 0)
+                .add(30, "Short Game", 20, 0)
+                .add(40, "New Game", 60, 0)
+                .build();
+        when(ownedGamesCache.getOrLoad(eq(STEAM_ID), anyBoolean(), any())).thenReturn(Mono.just(library));
+        when(snapshotStore.load(STEAM_ID)).thenReturn(Map.of(
+                10L, snapshot(10, "Portal", 100, 5),
+                20L, snapshot(20, "Half-Life", 150, 2)));
+    }
+
+    @Test
+    void onlyGamesPlayedSinceTheSnapshotAreRequested() {
+        when(steamApiClient.getPlayerAchievements(STEAM_ID, "20", 3)).thenReturn(Mono.just(achievements(4)));
+        when(steamApiClient.getPlayerAchievements(STEAM_ID, "40", 3)).thenReturn(Mono.just(achievements(7)));
+
+        AchievementStats stats = steamService.getAchievementStats(STEAM_ID, new SteamFetchContext()).block();
+
+        assertThat(stats.hidden()).isFalse();
+        assertThat(stats.completedAchievements()).isEqualTo(5 + 4 + 7);
+        assertThat(stats.totalAchievements()).isEqualTo(30);
+        verify(steamApiClient, never()).getPlayerAchievements(eq(STEAM_ID), eq("10"), anyInt());
+        verify(steamApiClient, never()).getPlayerAchievements(eq(STEAM_ID), eq("30"), anyInt());
+
+        // only the refreshed games are written back, with their new playtimes
+        verify(snapshotStore).save(eq(STEAM_ID), argThat(refreshed -> appIds(refreshed).equals(Set.of(20L, 40L))
+                && refreshed.stream().allMatch(game -> game.playtime() == (game.appId() == 20L ? 200 : 60))));
+    }
+
+    @Test
+    void unchangedLibraryIsServedFromTheSnapshot() {
+        when(snapshotStore.load(STEAM_ID)).thenReturn(Map.of(
+                10L, snapshot(10, "Portal", 100, 5),
+                20L, snapshot(20, "Half-Life", 200, 2),
+                40L, snapshot(40, "New Game", 60, 1)));
+
+        AchievementStats stats = steamService.getAchievementStats(STEAM_ID, new SteamFetchContext()).block();
+
+        assertThat(stats.completedAchievements()).isEqualTo(5 + 2 + 1);
+        verify(steamApiClient, never()).getPlayerAchievements(anyString(), anyString(), anyInt());
+        verify(snapshotStore, never()).save(anyString(), any());
+    }
+
+    @Test
+    void gameWhoseRefreshFailedKeepsItsStoredEntry() {
+        when(steamApiClient.getPlayerAchievements(STEAM_ID, "20", 3)).thenReturn(Mono.error(status(500)));
+        when(steamApiClient.getPlayerAchievements(STEAM_ID, "40", 3)).thenReturn(Mono.just(achievements(7)));
+
+        AchievementStats stats = steamService.getAchievementStats(STEAM_ID, new SteamFetchContext()).block();
+
+        // the stored progress of 20 is counted instead of dropping out for one refresh
+        assertThat(stats.completedAchievements()).isEqualTo(5 + 2 + 7);
+        assertThat(stats.totalAchievements()).isEqualTo(30);
+
+        // and it isn't written back, so it is requested again next time
+        verify(snapshotStore).save(eq(STEAM_ID), argThat(refreshed -> appIds(refreshed).equals(Set.of(40L))));
+    }
+
+    @Test
+    void forbiddenProbeMarksAchievementsHidden() {
+        when(steamApiClient.getPlayerAchievements(STEAM_ID, "20", 3)).thenReturn(Mono.error(status(403)));
+        when(steamApiClient.getPlayerAchievements(STEAM_ID, "40", 3)).thenReturn(Mono.just(achievements(7)));
+
+        AchievementStats stats = steamService.getAchievementStats(STEAM_ID, new SteamFetchContext()).block();
+
+        assertThat(stats.hidden()).isTrue();
+        assertThat(visibilityCache.isHidden(ProfileVisibilityCache.Section.ACHIEVEMENTS, STEAM_ID)).isTrue();
+        // the rest of the games are not requested after the probe failed
+        verify(steamApiClient, never()).getPlayerAchievements(eq(STEAM_ID), eq("40"), anyInt());
+        verify(snapshotStore, never()).save(anyString(), any());
+
+        // and the next request doesn't reach steam at all
+        assertThat(steamService.getAchievementStats(STEAM_ID, new SteamFetchContext()).block().hidden()).isTrue();
+        verify(ownedGamesCache, times(1)).getOrLoad(anyString(), anyBoolean(), any());
+    }
+
+    private static GameAchievementSnapshot snapshot(long appId, String name, int playtime, int completed) {
+        return new GameAchievementSnapshot(appId, name, playtime, completed, 10, List.of());
+    }
+
+    private static PlayerAchievements achievements(int completed) {
+        return new PlayerAchievements(true, 10, completed, List.of());
+    }
+
+    private static Set<Long> appIds(Collection<GameAchievementSnapshot> snapshots) {
+        return snapshots.stream().map(GameAchievementSnapshot::appId).collect(Collectors.toSet());
+    }
+
+    private static WebClientResponseException status(int code) {
+        return WebClientResponseException.create(code, "status " + code, new HttpHeaders(), new byte[0], null);
+    }
+}
@@ -0,0 +1,142 @@
+package kosukeroku.steam.library.analyzer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kosukeroku.steam.library.analyzer.cache.*;
+import kosukeroku.steam.library.analyzer.client.SteamApiClient;
+import kosukeroku.steam.library.analyzer.exception.SteamCallLimitException;
+import kosukeroku.steam.library.analyzer.exception.SteamPrivateProfileException;
+import kosukeroku.steam.library.analyzer.modelDTO.AchievementTotal;
+import kosukeroku.steam.library.analyzer.modelDTO.FriendAchievementLeaderboard;
+import kosukeroku.steam.library.analyzer.responseDTO.PlayerAchievements;
+import kosukeroku.steam.library.analyzer.responseDTO.SteamFriendsResponse;
+import kosukeroku.steam.library.analyzer.util.CompactLibrary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class SteamServiceLeaderboardTest {
+
+    private static final String USER = "user";
+    private static final long NOW = System.currentTimeMillis();
+
+    private final SteamApiClient steamApiClient = mock(SteamApiClient.class);
+    private final OwnedGamesCache ownedGamesCache = mock(OwnedGamesCache.class);
+    private final PlayerNameCache playerNameCache = mock(PlayerNameCache.class);
+    private final AchievementTotalsStore totalsStore = mock(AchievementTotalsStore.class);
+    private final ProfileVisibilityCache visibilityCache = new ProfileVisibilityCache(15);
+    private final GameNameDictionary names = new GameNameDictionary();
+
+    private SteamService steamService;
+
+    @BeforeEach
+    void setUp() {
+        steamService = new SteamService(steamApiClient, ownedGamesCache, playerNameCache, visibilityCache,
+                mock(AchievementSnapshotStore.class), totalsStore, names, mock(AppNameCatalog.class),
+                mock(AchievementSchemaCache.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(steamService, "friendsConcurrency", 8);
+        ReflectionTestUtils.setField(steamService, "achievementsConcurrency", 8);
+        ReflectionTestUtils.setField(steamService, "leaderboardInlineFriends", 2);
+        ReflectionTestUtils.setField(steamService, "language", "english");
+
+        // every name is cached, so names never reach steam
+        when(playerNameCache.getAll(anyCollection())).thenAnswer(invocation -> {
+            Map<String, String> found = new HashMap<>();
+            invocation.<Collection<String>>getArgument(0).forEach(id -> found.put(id, id.toUpperCase()));
+            return found;
+        });
+    }
+
+    @Test
+    void ranksStoredAndInlineTotalsAndListsTheRestAsPending() {
+        // stored: stored, storedLow and the private storedHidden. missing: first, second, third, only two fit inline.
+        // knownHidden was recently found private and is neither computed nor listed
+        List<String> friends = List.of("stored", "storedHidden", "storedLow", "first", "second", "third", "knownHidden");
+        when(steamApiClient.getFriendList(USER)).thenReturn(Mono.just(friendList(friends)));
+        when(totalsStore.getAll(friends)).thenReturn(Map.of(
+                "stored", new AchievementTotal(50, false, NOW),
+                "storedHidden", new AchievementTotal(0, true, NOW),
+                "storedLow", new AchievementTotal(10, false, NOW)));
+        visibilityCache.markHidden(ProfileVisibilityCache.Section.LIBRARY, "knownHidden");
+
+        withCompleted(USER, 20);
+        withCompleted("first", 30);
+        withCompleted("second", 5);
+
+        List<FriendAchievementLeaderboard> leaderboard = steamService.getAchievementLeaderboard(USER, new SteamFetchContext()).block();
+
+        assertThat(leaderboard).extracting(FriendAchievementLeaderboard::steamId)
+                .containsExactly("stored", "first", USER, "storedLow", "second", "third");
+        assertThat(leaderboard).extracting(FriendAchievementLeaderboard::totalAchievements)
+                .containsExactly(50, 30, 20, 10, 5, 0);
+        assertThat(leaderboard).extracting(FriendAchievementLeaderboard::pending)
+                .containsExactly(false, false, false, false, false, true);
+        assertThat(leaderboard.get(2).isCurrentUser()).isTrue();
+        assertThat(leaderboard.get(0).friendName()).isEqualTo("STORED");
+
+        // only the inline friends and the user are computed, and their totals are stored for next time
+        verify(totalsStore).put(eq("first"), argThat(total -> total.completedAchievements() == 30 && !total.hidden()));
+        verify(totalsStore).put(eq("second"), any(AchievementTotal.class));
+        verify(totalsStore).put(eq(USER), any(AchievementTotal.class));
+        verify(totalsStore, times(3)).put(anyString(), any(AchievementTotal.class));
+        for (String notComputed : List.of("stored", "storedHidden", "storedLow", "third", "knownHidden")) {
+            verify(ownedGamesCache, never()).getOrLoad(eq(notComputed), anyBoolean(), any());
+        }
+
+        // the user's library is the one with names shared with the user's other sections, friends' are nameless
+        verify(ownedGamesCache).getOrLoad(eq(USER), eq(true), any());
+        verify(ownedGamesCache).getOrLoad(eq("first"), eq(false), any());
+    }
+
+    @Test
+    void privateFriendComputedInlineIsStoredHiddenAndNotRanked() {
+        when(steamApiClient.getFriendList(USER)).thenReturn(Mono.just(friendList(List.of("private"))));
+        when(totalsStore.getAll(List.of("private"))).thenReturn(Map.of());
+        withCompleted(USER, 20);
+        when(ownedGamesCache.getOrLoad(eq("private"), anyBoolean(), any()))
+                .thenReturn(Mono.error(new SteamPrivateProfileException("private")));
+
+        List<FriendAchievementLeaderboard> leaderboard = steamService.getAchievementLeaderboard(USER, new SteamFetchContext()).block();
+
+        assertThat(leaderboard).extracting(FriendAchievementLeaderboard::steamId).containsExactly(USER);
+        verify(totalsStore).put(eq("private"), argThat(AchievementTotal::hidden));
+    }
+
+    @Test
+    void totalIsRefusedWhenItsGamesDontFitIntoTheCallLimit() {
+        CompactLibrary library = CompactLibrary.builder(names)
+                .add(10, "Portal", 100, 0)
+                .add(20, "Half-Life", 200, 0)
+                .build();
+        when(ownedGamesCache.getOrLoad(eq("friend"), anyBoolean(), any())).thenReturn(Mono.just(library));
+
+        assertThatThrownBy(() -> steamService.refreshAchievementTotal("friend", false, new SteamFetchContext(1)).block())
+                .isInstanceOf(SteamCallLimitException.class);
+
+        verify(steamApiClient, never()).getPlayerAchievements(anyString(), anyString(), anyInt());
+        verify(totalsStore, never()).put(anyString(), any(AchievementTotal.class));
+    }
+
+    // a library of one changed game with the given number of completed achievements
+    private void withCompleted(String steamId, int completed) {
+        CompactLibrary library = CompactLibrary.builder(names).add(10, "Portal", 100, 0).build();
+        when(ownedGamesCache.getOrLoad(eq(steamId), anyBoolean(), any())).thenReturn(Mono.just(library));
+        when(steamApiClient.getPlayerAchievements(steamId, "10", 3))
+                .thenReturn(Mono.just(new PlayerAchievements(true, 50, completed, List.of())));
+    }
+
+    private static SteamFriendsResponse friendList(List<String> steamIds) {
+        return new SteamFriendsResponse(new SteamFriendsResponse.FriendsList(steamIds.stream()
+                .map(steamId -> new SteamFriendsResponse.Friend(steamId, "friend", 0L))
+                .toList()));
+    }
+}
@@ -0,0 +1,96 @@
+package kosukeroku.steam.library.analyzer.telegram;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ProgressiveMessageTest {
+
+    private static final String CHAT_ID = "42";
+    private static final String LOADING = "⏳ Loading...";
+
+    private final DefaultAbsSender sender = mock(DefaultAbsSender.class);
+
+    @Test
+    void earlyUpdatesAreHeldBackAndCollapsedToTheLatest() throws Exception {
+        ProgressiveMessage message = new ProgressiveMessage(sender, CHAT_ID, 1, LOADING, 200);
+
+        message.update("first section");
+        message.update("first and second sections");
+        verify(sender, never()).execute(any(EditMessageText.class));
+
+        // one delayed edit, with the text of the last update
+        ArgumentCaptor<EditMessageText> edit = ArgumentCaptor.forClass(EditMessageText.class);
+        verify(sender, timeout(1000)).execute(edit.capture());
+        assertThat(edit.getValue().getText()).isEqualTo("first and second sections");
+        assertThat(edit.getValue().getMessageId()).isEqualTo(1);
+
+        Thread.sleep(300);
+        verify(sender, times(1)).execute(any(EditMessageText.class));
+    }
+
+    @Test
+    void updateAfterTheIntervalIsEditedRightAway() throws Exception {
+        ProgressiveMessage message = new ProgressiveMessage(sender, CHAT_ID, 1, LOADING, 50);
+        Thread.sleep(100);
+
+        message.update("first section");
+
+        ArgumentCaptor<EditMessageText> edit = ArgumentCaptor.forClass(EditMessageText.class);
+        verify(sender).execute(edit.capture());
+        assertThat(edit.getValue().getText()).isEqualTo("first section");
+    }
+
+    @Test
+    void unchangedTextIsNotEdited() throws Exception {
+        ProgressiveMessage message = new ProgressiveMessage(sender, CHAT_ID, 1, LOADING, 0);
+
+        message.update(LOADING);
+        message.update("first section");
+        message.update("first section");
+
+        verify(sender, times(1)).execute(any(EditMessageText.class));
+    }
+
+    @Test
+    void completeWaitsForTheIntervalAndDropsTheHeldBackUpdate() throws Exception {
+        ProgressiveMessage message = new ProgressiveMessage(sender, CHAT_ID, 1, LOADING, 200);
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
+
+        message.update("first section");
+        long startedAt = System.currentTimeMillis();
+        message.complete("result", keyboard);
+
+        assertThat(System.currentTimeMillis() - startedAt).isGreaterThanOrEqualTo(150);
+        Thread.sleep(300);
+
+        ArgumentCaptor<EditMessageText> edit = ArgumentCaptor.forClass(EditMessageText.class);
+        verify(sender, times(1)).execute(edit.capture());
+        assertThat(edit.getValue().getText()).isEqualTo("result");
+        assertThat(edit.getValue().getReplyMarkup()).isSameAs(keyboard);
+        verify(sender, never()).execute(any(SendMessage.class));
+    }
+
+    @Test
+    void resultIsSentAsANewMessageWhenTheEditFails() throws Exception {
+        ProgressiveMessage message = new ProgressiveMessage(sender, CHAT_ID, 1, LOADING, 0);
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
+        doThrow(new TelegramApiException("message can't be edited")).when(sender).execute(any(EditMessageText.class));
+
+        message.complete("result", keyboard);
+
+        verify(sender).execute(any(SendMessage.class));
+        ArgumentCaptor<SendMessage> sent = ArgumentCaptor.forClass(SendMessage.class);
+        verify(sender, atLeastOnce()).execute(sent.capture()); // the failed edit went through the same method
+        assertThat(sent.getValue().getChatId()).isEqualTo(CHAT_ID);
+        assertThat(sent.getValue().getText()).isEqualTo("result");
+        assertThat(sent.getValue().getReplyMarkup()).isSameAs(keyboard);
+    }
+}
@@ -0,0 +1,120 @@
+package kosukeroku.steam.library.analyzer.telegram;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpdateDispatcherTest {
+
+    private final UpdateDispatcher dispatcher = new UpdateDispatcher(8, 1000);
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void updatesOfOneChatRunInOrder() throws Exception {
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            int update = i;
+            dispatcher.dispatch(1L, () -> {
+                sleepQuietly(ThreadLocalRandom.current().nextInt(2));
+                processed.add(update);
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(processed).isSortedAccordingTo(Integer::compare).hasSize(100);
+    }
+
+    @Test
+    void slowChatDoesNotHoldUpOthers() throws Exception {
+        CountDownLatch slowRelease = new CountDownLatch(1);
+        CountDownLatch otherDone = new CountDownLatch(1);
+
+        dispatcher.dispatch(1L, () -> awaitQuietly(slowRelease));
+        dispatcher.dispatch(2L, otherDone::countDown);
+
+        assertThat(otherDone.await(5, TimeUnit.SECONDS)).isTrue();
+        slowRelease.countDown();
+    }
+
+    @Test
+    void failedUpdateDoesNotBreakTheChatQueue() throws Exception {
+        CountDownLatch next = new CountDownLatch(1);
+
+        dispatcher.dispatch(1L, () -> {
+            throw new IllegalStateException("handler failed");
+        });
+        dispatcher.dispatch(1L, next::countDown);
+
+        assertThat(next.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void updatesOverThePendingLimitAreRejected() throws Exception {
+        UpdateDispatcher bounded = new UpdateDispatcher(2, 3);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(3);
+
+        try {
+            // two chats running, the second update of one of them queued behind the first
+            for (long chatId = 1; chatId <= 3; chatId++) {
+                assertThat(bounded.dispatch(chatId % 2, () -> {
+                    awaitQuietly(release);
+                    finished.countDown();
+                })).isTrue();
+            }
+
+            assertThat(bounded.dispatch(3L, () -> {})).isFalse();
+            assertThat(bounded.getPendingUpdates()).isEqualTo(3);
+
+            release.countDown();
+            assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+            awaitPending(bounded, 0);
+
+            CountDownLatch accepted = new CountDownLatch(1);
+            assertThat(bounded.dispatch(3L, accepted::countDown)).isTrue();
+            assertThat(accepted.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            bounded.shutdown();
+        }
+    }
+
+    // the counter drops right after the task returns, on the task's thread
+    private static void awaitPending(UpdateDispatcher dispatcher, int pending) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getPendingUpdates() != pending && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(dispatcher.getPendingUpdates()).isEqualTo(pending);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package kosukeroku.steam.library.analyzer.util;
+
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import kosukeroku.steam.library.analyzer.modelDTO.SteamGame;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactLibraryTest {
+
+    private final GameNameDictionary names = new GameNameDictionary();
+
+    @Test
+    void keepsColumnsAlignedWhileSortingByAppId() {
+        CompactLibrary library = CompactLibrary.builder(names)
+                .add(570, "Dota 2", 1200, 30)
+                .add(10, "Counter-Strike", 0, 0)
+                .add(440, "Team Fortress 2", 300, 0)
+                .build();
+
+        assertThat(library.size()).isEqualTo(3);
+        assertThat(new int[]{library.appId(0), library.appId(1), library.appId(2)}).containsExactly(10, 440, 570);
+        assertThat(library.playtime(2)).isEqualTo(1200);
+        assertThat(library.recentPlaytime(2)).isEqualTo(30);
+        assertThat(library.name(1)).isEqualTo("Team Fortress 2");
+        assertThat(library.toGame(2)).isEqualTo(new SteamGame(570L, "Dota 2", 1200, 30, null));
+        assertThat(library.toGame(0)).isEqualTo(new SteamGame(10L, "Counter-Strike", 0, null, null));
+    }
+
+    @Test
+    void namesComeFromTheSharedDictionary() {
+        CompactLibrary named = CompactLibrary.builder(names).add(570, "Dota 2", 10, 0).build();
+        CompactLibrary nameless = CompactLibrary.builder(names).add(570, null, 20, 0).add(730, null, 5, 0).build();
+
+        assertThat(named.name(0)).isEqualTo("Dota 2");
+        assertThat(nameless.name(0)).isEqualTo("Dota 2");
+        assertThat(nameless.name(1)).isNull();
+    }
+
+    @Test
+    void summarizesPlaytime() {
+        CompactLibrary library = CompactLibrary.of(List.of(
+                new SteamGame(1L, "A", 100, 10, null),
+                new SteamGame(2L, "B", 0, null, null),
+                new SteamGame(3L, "C", 50, null, null)), names);
+
+        assertThat(library.totalPlaytime()).isEqualTo(150);
+        assertThat(library.playedGames()).isEqualTo(2);
+        assertThat(library.recentlyPlayed()).containsExactly(0);
+        assertThat(library.containsAppId(3)).isTrue();
+        assertThat(library.containsAppId(4)).isFalse();
+    }
+
+    @Test
+    void ordersByPlaytime() {
+        CompactLibrary.Builder builder = CompactLibrary.builder(names);
+        int[] playtimes = {5, 90, 0, 40, 90, 70};
+        for (int i = 0; i < playtimes.length; i++) {
+            builder.add(i + 1, null, playtimes[i], 0);
+        }
+        CompactLibrary library = builder.build();
+
+        // ties keep appId order
+        assertThat(library.byPlaytime()).containsExactly(1, 4, 5, 3, 0, 2);
+        assertThat(library.topByPlaytime(3, index -> true)).containsExactly(1, 4, 5);
+        assertThat(library.topByPlaytime(3, index -> library.appId(index) != 5)).containsExactly(1, 5, 3);
+        assertThat(library.topByPlaytime(10, index -> library.playtime(index) > 0)).containsExactly(1, 4, 5, 3, 0);
+    }
+
+    @Test
+    void growsPastTheInitialCapacity() {
+        CompactLibrary.Builder builder = CompactLibrary.builder(names);
+        for (int appId = 1000; appId > 0; appId--) {
+            builder.add(appId, null, appId, 0);
+        }
+        CompactLibrary library = builder.build();
+
+        assertThat(library.size()).isEqualTo(1000);
+        for (int i = 0; i < library.size(); i++) {
+            assertThat(library.appId(i)).isEqualTo(i + 1);
+            assertThat(library.playtime(i)).isEqualTo(i + 1);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package kosukeroku.steam.library.analyzer.util;
+
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GameOverlapEngineTest {
+
+    private final GameNameDictionary names = new GameNameDictionary();
+
+    @Test
+    void sharedCountMatchesAMergeOfSortedAppIds() {
+        Random random = new Random(7);
+        CompactLibrary user = randomLibrary(random, 3_000);
+        GameOverlapEngine engine = new GameOverlapEngine(user);
+
+        for (int i = 0; i < 50; i++) {
+            CompactLibrary friend = randomLibrary(random, random.nextInt(5_000));
+            assertThat(engine.sharedCount(friend)).isEqualTo(mergeCount(user, friend));
+        }
+    }
+
+    @Test
+    void nothingIsSharedWithAnEmptyLibrary() {
+        GameOverlapEngine engine = new GameOverlapEngine(CompactLibrary.builder(names).add(570, "Dota 2", 10, 0).build());
+
+        assertThat(engine.sharedCount(CompactLibrary.builder(names).build())).isZero();
+        assertThat(engine.topShared(CompactLibrary.builder(names).build(), 3)).isEmpty();
+    }
+
+    @Test
+    void topSharedGamesAreTheUsersMostPlayedNamedOnes() {
+        CompactLibrary user = CompactLibrary.builder(names)
+                .add(10, "Counter-Strike", 500, 0)
+                .add(440, "Team Fortress 2", 300, 0)
+                .add(570, "Dota 2", 1200, 0)
+                .add(730, null, 900, 0) // unnamed, skipped
+                .add(620, "Portal 2", 100, 0)
+                .build();
+        CompactLibrary friend = CompactLibrary.builder(names)
+                .add(440, null, 1, 0)
+                .add(570, null, 1, 0)
+                .add(730, null, 1, 0)
+                .add(620, null, 1, 0)
+                .build();
+        GameOverlapEngine engine = new GameOverlapEngine(user);
+
+        assertThat(engine.sharedCount(friend)).isEqualTo(4);
+        assertThat(engine.topShared(friend, 2)).isEqualTo(List.of("Dota 2", "Team Fortress 2"));
+        assertThat(engine.topShared(friend, 10)).isEqualTo(List.of("Dota 2", "Team Fortress 2", "Portal 2"));
+    }
+
+    // the way shared games were counted before bitmaps: a merge of both sorted appId columns
+    private static int mergeCount(CompactLibrary a, CompactLibrary b) {
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            int compare = Integer.compare(a.appId(i), b.appId(j));
+            if (compare == 0) {
+                shared++;
+                i++;
+                j++;
+            } else if (compare < 0) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    // appIds are drawn from a range wide enough for partial overlaps, in no particular order
+    private CompactLibrary randomLibrary(Random random, int size) {
+        CompactLibrary.Builder builder = CompactLibrary.builder(names);
+        random.ints(size, 1, 20_000).distinct().forEach(appId -> builder.add(appId, null, random.nextInt(1000), 0));
+        return builder.build();
+    }
+}
@@ -0,0 +1,102 @@
+package kosukeroku.steam.library.analyzer.util;
+
+import kosukeroku.steam.library.analyzer.cache.GameNameDictionary;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GamePopularityAggregatorTest {
+
+    private record Stats(int friendCount, long totalPlaytime) {}
+
+    private final GameNameDictionary names = new GameNameDictionary();
+
+    @Test
+    void countsFriendsAndSumsPlaytimePerGame() {
+        GamePopularityAggregator aggregator = new GamePopularityAggregator();
+        aggregator.addLibrary(library(new int[][]{{570, 100}, {440, 20}}));
+        aggregator.addLibrary(library(new int[][]{{570, 50}}));
+        aggregator.addLibrary(library(new int[][]{{730, 0}, {440, 5}, {570, 1}}));
+
+        assertThat(collect(aggregator)).isEqualTo(Map.of(
+                570L, new Stats(3, 151),
+                440L, new Stats(2, 25),
+                730L, new Stats(1, 0)));
+    }
+
+    @Test
+    void keepsEveryGameWhenStripesGrow() {
+        // far more games than the initial capacity of all stripes together
+        GamePopularityAggregator aggregator = new GamePopularityAggregator();
+        int[][] games = new int[20_000][];
+        for (int i = 0; i < games.length; i++) {
+            games[i] = new int[]{i + 1, i};
+        }
+        aggregator.addLibrary(library(games));
+        aggregator.addLibrary(library(games));
+
+        Map<Long, Stats> aggregated = collect(aggregator);
+
+        assertThat(aggregated).hasSize(games.length);
+        for (int[] game : games) {
+            assertThat(aggregated.get((long) game[0])).isEqualTo(new Stats(2, 2L * game[1]));
+        }
+    }
+
+    @Test
+    void concurrentLibrariesGiveTheSameResultAsSequentialOnes() throws Exception {
+        Random random = new Random(42);
+        List<CompactLibrary> libraries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int[][] games = new int[random.nextInt(500)][];
+            for (int j = 0; j < games.length; j++) {
+                games[j] = new int[]{j * 10 + random.nextInt(10) + 1, random.nextInt(10_000)};
+            }
+            libraries.add(library(games));
+        }
+
+        GamePopularityAggregator sequential = new GamePopularityAggregator();
+        libraries.forEach(sequential::addLibrary);
+
+        GamePopularityAggregator concurrent = new GamePopularityAggregator();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (CompactLibrary library : libraries) {
+                futures.add(executor.submit(() -> concurrent.addLibrary(library)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(collect(concurrent)).isEqualTo(collect(sequential));
+    }
+
+    // every game is {appId, playtime}
+    private CompactLibrary library(int[][] games) {
+        CompactLibrary.Builder builder = CompactLibrary.builder(names);
+        for (int[] game : games) {
+            builder.add(game[0], null, game[1], 0);
+        }
+        return builder.build();
+    }
+
+    private static Map<Long, Stats> collect(GamePopularityAggregator aggregator) {
+        Map<Long, Stats> aggregated = new HashMap<>();
+        aggregator.forEach((appId, friendCount, totalPlaytime) ->
+                assertThat(aggregated.put(appId, new Stats(friendCount, totalPlaytime))).isNull());
+        return aggregated;
+    }
+}